@@ -0,0 +1,33 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+public class BenchmarkMain {
+
+    // Runs the benchmarks with the gc profiler and JSON results by default; anything given on the
+    // command line is passed to JMH and takes precedence.
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+
+        if (commandLine.getProfilers().isEmpty()) {
+            options.addProfiler(GCProfiler.class);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        if (!commandLine.getResult().hasValue()) {
+            String version = BenchmarkMain.class.getPackage().getImplementationVersion();
+            options.result(String.format("results/jmh-%s.json", version == null ? "dev" : version));
+        }
+
+        new Runner(options.build()).run();
+    }
+}
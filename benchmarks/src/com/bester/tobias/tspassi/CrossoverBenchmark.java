@@ -0,0 +1,50 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One pair of children per invocation, without evaluating them. The parents are two random tours,
+// which is the worst case for the edge-based operators since the parents share almost no edges.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrossoverBenchmark {
+
+    @Param({"st70", "lin318", "pr1002", "brd14051"})
+    String problem;
+
+    @Param({"ox", "pmx", "erx", "eax"})
+    String operator;
+
+    private CrossoverOperator crossover;
+    private SplittableRandom random;
+    private int[] parent1;
+    private int[] parent2;
+    private int[] child1;
+    private int[] child2;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DirectPopulation population = new DirectPopulation(problem, 2, 1, 42, 1);
+        NeighborLists neighbors = new NeighborLists(population.instance.getX(), population.instance.getY(), 10);
+        crossover = CrossoverOperator.create(operator, population.distances, neighbors, 0);
+        random = new SplittableRandom(42);
+
+        int numCities = population.dimension;
+        parent1 = new Chromosome(0, numCities, population.distances, random).getTour();
+        parent2 = new Chromosome(1, numCities, population.distances, random).getTour();
+        child1 = new int[numCities];
+        child2 = new int[numCities];
+    }
+
+    @Benchmark
+    public int crossover() {
+        crossover.crossover(parent1, parent2, child1, child2, random);
+        return child1[0] + child2[0];
+    }
+}
@@ -0,0 +1,43 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// One full generation on a single thread, so results do not depend on the machine's core count.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GenerationBenchmark {
+
+    @Param({"st70", "a280", "pr1002", "brd14051"})
+    String problem;
+
+    @Param({"20", "200", "2000"})
+    int populationSize;
+
+    @Param({"direct", "indirect"})
+    String representation;
+
+    private DirectPopulation population;
+    private double mutationProbability;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        boolean direct = representation.equals("direct");
+        population = direct
+                ? new DirectPopulation(problem, populationSize, Integer.MAX_VALUE, 42, 1)
+                : new IndirectPopulation(problem, populationSize, Integer.MAX_VALUE, 42, 1);
+        mutationProbability = direct ? 0.7 : 0.05;
+        population.createInitialPopulation();
+    }
+
+    @Benchmark
+    public int nextGeneration() {
+        population.nextGeneration(4, mutationProbability);
+        return population.getGlobalBestFitness();
+    }
+}
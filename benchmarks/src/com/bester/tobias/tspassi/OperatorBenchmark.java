@@ -0,0 +1,65 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OperatorBenchmark {
+
+    @Param({"st70", "a280", "pr1002", "brd14051"})
+    String problem;
+
+    private DirectPopulation population;
+    private ParallelEngine.Worker worker;
+    private SplittableRandom random;
+    private Chromosome parent1;
+    private Chromosome parent2;
+    private Chromosome child1;
+    private Chromosome child2;
+    private Chromosome operand;
+    private IndirectChromosome indirect;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        population = new DirectPopulation(problem, 2, 1, 42, 1);
+        worker = population.engine.getWorker(0);
+        random = new SplittableRandom(42);
+
+        int numCities = population.dimension;
+        parent1 = new Chromosome(0, numCities, population.distances, random);
+        parent2 = new Chromosome(1, numCities, population.distances, random);
+        child1 = new Chromosome(parent1);
+        child2 = new Chromosome(parent2);
+        operand = new Chromosome(0, numCities, population.distances, random);
+        indirect = new IndirectChromosome(numCities / 2, random);
+    }
+
+    @Benchmark
+    public int evaluate() {
+        return parent1.evaluate();
+    }
+
+    @Benchmark
+    public int swapMutation() {
+        population.mutation(parent1, child1, 0, random);
+        return child1.getCurrentFitness();
+    }
+
+    @Benchmark
+    public int orderCrossover() {
+        population.crossover(parent1, parent2, child1, child2, 0, worker);
+        return child1.getCurrentFitness() + child2.getCurrentFitness();
+    }
+
+    @Benchmark
+    public int indirectEvaluate() {
+        return indirect.evaluate(operand);
+    }
+}
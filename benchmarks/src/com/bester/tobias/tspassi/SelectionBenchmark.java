@@ -0,0 +1,49 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Selects one generation's worth of parents from a fixed set of fitnesses.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SelectionBenchmark {
+
+    @Param({"20", "200", "2000", "10000"})
+    int populationSize;
+
+    @Param({"tournament", "tournamentWithReplacement", "linearRanking", "stochasticUniversal"})
+    String strategy;
+
+    private SelectionStrategy selection;
+    private SplittableRandom random;
+    private int[] fitness;
+    private int[] selected;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplittableRandom(42);
+        fitness = random.ints(populationSize, 1000, 100000).toArray();
+        selected = new int[populationSize];
+
+        switch (strategy) {
+            case "tournament": selection = new TournamentSelection(4, false); break;
+            case "tournamentWithReplacement": selection = new TournamentSelection(4, true); break;
+            case "linearRanking": selection = new LinearRankingSelection(1.8); break;
+            case "stochasticUniversal": selection = new StochasticUniversalSampling(new LinearRankingSelection(1.8)); break;
+            default: throw new IllegalArgumentException("Unknown strategy " + strategy);
+        }
+    }
+
+    @Benchmark
+    public int[] selectGeneration() {
+        selection.prepare(fitness);
+        selection.select(fitness, selected, 0, selected.length, random);
+        return selected;
+    }
+}
@@ -0,0 +1,45 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// One reversal of a random path per invocation, followed by a between query on it. Random paths
+// are the array's worst case; local search mostly reverses paths between near neighbours.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TourBenchmark {
+
+    @Param({"1000", "5000", "20000", "100000"})
+    int numCities;
+
+    @Param({"array", "two-level"})
+    String structure;
+
+    private Tour tour;
+    private SplittableRandom random;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplittableRandom(42);
+        int[] cities = new int[numCities];
+        for (int idx = 0; idx < numCities; idx++) {
+            cities[idx] = idx;
+        }
+        tour = structure.equals("array") ? new ArrayTour(numCities) : new TwoLevelListTour(numCities);
+        tour.load(cities);
+    }
+
+    @Benchmark
+    public boolean reverse() {
+        int from = random.nextInt(numCities);
+        int to = random.nextInt(numCities);
+        tour.reverse(from, to);
+        return tour.between(to, random.nextInt(numCities), from);
+    }
+}
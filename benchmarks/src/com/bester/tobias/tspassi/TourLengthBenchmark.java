@@ -0,0 +1,66 @@
+package com.bester.tobias.tspassi;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// Full length of each of a population's random tours, edge by edge through DistanceMatrix.distance
+// (the full matrix up to MAX_FULL_MATRIX_CITIES cities, the cache above) or by one of the
+// coordinate kernels.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class TourLengthBenchmark {
+
+    private static final int NUM_TOURS = 16;
+
+    @Param({"st70", "pr1002", "brd14051"})
+    String problem;
+
+    @Param({"lookup", "scalar", "vector"})
+    String kernel;
+
+    private DistanceMatrix distances;
+    private TourKernel tourKernel;
+    private int[][] tours;
+    private int[] lengths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        DirectPopulation population = new DirectPopulation(problem, 2, 1, 42, 1);
+        distances = population.distances;
+        double[] x = distances.getX();
+        double[] y = distances.getY();
+        tourKernel = kernel.equals("scalar") ? new ScalarTourKernel(x, y) : new VectorTourKernel(x, y);
+
+        SplittableRandom random = new SplittableRandom(42);
+        tours = new int[NUM_TOURS][];
+        for (int idx = 0; idx < NUM_TOURS; idx++) {
+            tours[idx] = new Chromosome(idx, population.dimension, distances, random).getTour();
+        }
+        lengths = new int[NUM_TOURS];
+    }
+
+    @Benchmark
+    public int[] population() {
+        if (!kernel.equals("lookup")) {
+            for (int idx = 0; idx < NUM_TOURS; idx++) {
+                lengths[idx] = tourKernel.length(tours[idx]);
+            }
+            return lengths;
+        }
+        for (int idx = 0; idx < NUM_TOURS; idx++) {
+            int[] tour = tours[idx];
+            int length = distances.distance(tour[tour.length - 1], tour[0]);
+            for (int city = 0; city < tour.length - 1; city++) {
+                length += distances.distance(tour[city], tour[city + 1]);
+            }
+            lengths[idx] = length;
+        }
+        return lengths;
+    }
+}
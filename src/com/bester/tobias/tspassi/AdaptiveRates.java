@@ -0,0 +1,91 @@
+package com.bester.tobias.tspassi;
+
+// Steers a population's mutation probability by its edge entropy once per generation. Each
+// operator application is a mutation with that probability and a crossover otherwise, so the
+// crossover rate moves the other way. Below the low diversity mark the probability grows by step,
+// above the high mark it shrinks by step. It stays between half the configured probability and
+// twice it, and is never raised past one half: with fewer crossovers than that, single swaps
+// undo more than crossover builds.
+//
+// A population below the collapse mark that has not found a better tour in patience generations
+// is spending its evaluations on copies of itself. The first time, the worst part of it is
+// replaced by random immigrants; if another patience generations bring nothing better either, it
+// is restarted, keeping only its best member.
+public class AdaptiveRates {
+
+    enum Action { NONE, IMMIGRANTS, RESTART }
+
+    private static final double LOW = 0.2;
+    private static final double HIGH = 0.5;
+    private static final double COLLAPSE = 0.1;
+    private static final double STEP = 1.02;
+    private static final double MAX_RAISED = 0.5;
+
+    private final double low;
+    private final double high;
+    private final double collapse;
+    private final long patience;
+    private final double min;
+    private final double max;
+    private double mutationProbability;
+
+    private int best = Integer.MAX_VALUE;
+    private long lastImprovement;
+    private long lastAction;
+    private boolean immigrantsTried;
+    private long immigrations;
+    private long restarts;
+
+    AdaptiveRates(double mutationProbability, double low, double high, double collapse, long patience) {
+        this.mutationProbability = mutationProbability;
+        this.low = low;
+        this.high = high;
+        this.collapse = collapse;
+        this.patience = patience;
+        this.min = mutationProbability / 2;
+        this.max = Math.max(mutationProbability, Math.min(MAX_RAISED, mutationProbability * 2));
+    }
+
+    // Marks found on st70 with 20 members, whose entropy falls below 0.1 within a few hundred
+    // generations in every generation model.
+    AdaptiveRates(double mutationProbability, long patience) {
+        this(mutationProbability, LOW, HIGH, COLLAPSE, patience);
+    }
+
+    Action afterGeneration(double diversity, int bestFitness, long generation) {
+        if (diversity < low) {
+            mutationProbability = Math.min(max, mutationProbability * STEP);
+        } else if (diversity > high) {
+            mutationProbability = Math.max(min, mutationProbability / STEP);
+        }
+
+        if (bestFitness < best) {
+            best = bestFitness;
+            lastImprovement = generation;
+            immigrantsTried = false;
+        }
+        if (diversity >= collapse || generation - lastImprovement < patience || generation - lastAction < patience) {
+            return Action.NONE;
+        }
+
+        lastAction = generation;
+        if (!immigrantsTried) {
+            immigrantsTried = true;
+            immigrations++;
+            return Action.IMMIGRANTS;
+        }
+        immigrantsTried = false;
+        restarts++;
+        return Action.RESTART;
+    }
+
+    double getMutationProbability() {
+        return mutationProbability;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("AdaptiveRates{ mutationProbability=%.3f, immigrations=%d, restarts=%d }",
+                mutationProbability, immigrations, restarts);
+    }
+}
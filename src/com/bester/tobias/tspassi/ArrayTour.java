@@ -0,0 +1,82 @@
+package com.bester.tobias.tspassi;
+
+// The tour array itself plus each city's index in it. Queries are O(1) and a reversal costs
+// the length of the shorter side, up to n / 2.
+public class ArrayTour implements Tour {
+
+    private final int[] position;
+    private int[] tour;
+
+    ArrayTour(int size) {
+        position = new int[size];
+    }
+
+    @Override
+    public void load(int[] cities) {
+        tour = cities;
+        for (int idx = 0; idx < cities.length; idx++) {
+            position[cities[idx]] = idx;
+        }
+    }
+
+    @Override
+    public void store(int[] cities) {
+        if (cities != tour) {
+            System.arraycopy(tour, 0, cities, 0, tour.length);
+        }
+    }
+
+    @Override
+    public int next(int city) {
+        int idx = position[city] + 1;
+        return tour[idx == tour.length ? 0 : idx];
+    }
+
+    @Override
+    public int previous(int city) {
+        int idx = position[city];
+        return tour[idx == 0 ? tour.length - 1 : idx - 1];
+    }
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        int positionA = position[a];
+        int positionB = position[b];
+        int positionC = position[c];
+        return positionA <= positionC
+                ? positionA <= positionB && positionB <= positionC
+                : positionB >= positionA || positionB <= positionC;
+    }
+
+    // A cycle reads the same if the rest of the tour is reversed instead, so the shorter side is
+    // the one that is flipped.
+    @Override
+    public void reverse(int from, int to) {
+        int size = tour.length;
+        int i = position[from];
+        int j = position[to];
+        int length = j - i;
+        if (length < 0) {
+            length += size;
+        }
+        length++;
+
+        if (length * 2 > size) {
+            int newI = (j + 1) % size;
+            j = (i - 1 + size) % size;
+            i = newI;
+            length = size - length;
+        }
+
+        for (int swaps = length / 2; swaps > 0; swaps--) {
+            int cityI = tour[i];
+            int cityJ = tour[j];
+            tour[i] = cityJ;
+            position[cityJ] = i;
+            tour[j] = cityI;
+            position[cityI] = j;
+            i = i == size - 1 ? 0 : i + 1;
+            j = j == 0 ? size - 1 : j - 1;
+        }
+    }
+}
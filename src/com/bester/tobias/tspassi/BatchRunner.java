@@ -0,0 +1,377 @@
+package com.bester.tobias.tspassi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+// Headless entry point that runs every combination of a parameter sweep, one single-threaded
+// trial per core, without touching JavaFX. Usage:
+//   java -cp tspassi.jar com.bester.tobias.tspassi.BatchRunner [--spec sweep.properties] [key=value ...]
+// Keys take comma separated lists: problems, representations (direct, indirect, random-key),
+// populations, tournaments, mutations, crossovers (ox, pmx, erx, eax), keyCrossovers (uniform,
+// arithmetic; used instead of crossovers for random-key, while indirect trials have none and
+// report -), models (generational, elitist, steady-state) and seeds (which also accepts a range
+// such as 1-5). iterations, elites, parallelism and out (a .csv or .json file;
+// JSON is written one object per line) take one value, as do the optional stopping rules seconds,
+// evaluations, stagnation (generations without improvement) and targetGap (percent over optimum),
+// and adaptive, the patience of AdaptiveRates for direct trials (0, the default, for fixed rates).
+// Instances too large for a full distance matrix measure tours faster with
+// --add-modules jdk.incubator.vector on the java command line.
+public class BatchRunner {
+
+    private static final List<String> NO_CROSSOVER = List.of("-");
+
+    private final List<String> problems;
+    private final List<String> representations;
+    private final List<Integer> populations;
+    private final List<Integer> tournaments;
+    private final List<Double> mutations;
+    private final List<String> crossovers;
+    private final List<String> keyCrossovers;
+    private final List<DirectPopulation.GenerationModel> models;
+    private final List<Long> seeds;
+    private final int iterations;
+    private final int elites;
+    private final long seconds;
+    private final long evaluations;
+    private final long stagnation;
+    private final double targetGap;
+    private final long adaptive;
+    private final int parallelism;
+    private final Path out;
+
+    private final OptimalSolutions optimalSolutions;
+    private final Map<String, DirectPopulation> loadedProblems = new ConcurrentHashMap<>();
+    private final Map<String, Integer> remainingTrials = new HashMap<>();
+    private BufferedWriter writer;
+    private boolean json;
+
+    BatchRunner(Properties spec) throws IOException {
+        problems = parseList(spec.getProperty("problems", "st70"), String::valueOf);
+        representations = parseList(spec.getProperty("representations", "direct"), String::valueOf);
+        populations = parseList(spec.getProperty("populations", "20"), Integer::valueOf);
+        tournaments = parseList(spec.getProperty("tournaments", "4"), Integer::valueOf);
+        mutations = parseList(spec.getProperty("mutations", "0.7"), Double::valueOf);
+        crossovers = parseList(spec.getProperty("crossovers", "ox"), String::valueOf);
+        keyCrossovers = parseList(spec.getProperty("keyCrossovers", "uniform"), String::valueOf);
+        models = parseList(spec.getProperty("models", "generational"),
+                model -> DirectPopulation.GenerationModel.valueOf(model.toUpperCase(Locale.ROOT).replace('-', '_')));
+        seeds = parseSeeds(spec.getProperty("seeds", "1-5"));
+        iterations = Integer.parseInt(spec.getProperty("iterations", "10000"));
+        elites = Integer.parseInt(spec.getProperty("elites", "2"));
+        seconds = Long.parseLong(spec.getProperty("seconds", "0"));
+        evaluations = Long.parseLong(spec.getProperty("evaluations", "0"));
+        stagnation = Long.parseLong(spec.getProperty("stagnation", "0"));
+        targetGap = Double.parseDouble(spec.getProperty("targetGap", "-1"));
+        adaptive = Long.parseLong(spec.getProperty("adaptive", "0"));
+        parallelism = Integer.parseInt(spec.getProperty("parallelism", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        out = Paths.get(spec.getProperty("out", "results/batch.csv"));
+
+        for (String representation : representations) {
+            if (!representation.equals("direct") && !representation.equals("indirect")
+                    && !representation.equals("random-key")) {
+                throw new IllegalArgumentException("Unknown representation " + representation);
+            }
+        }
+        optimalSolutions = OptimalSolutions.load(OptimalSolutions.DEFAULT_FILE);
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Properties spec = new Properties();
+        for (int idx = 0; idx < args.length; idx++) {
+            if (args[idx].equals("--spec")) {
+                try (InputStream in = Files.newInputStream(Paths.get(args[++idx]))) {
+                    spec.load(in);
+                }
+            } else if (args[idx].contains("=")) {
+                String[] keyValue = args[idx].split("=", 2);
+                spec.setProperty(keyValue[0], keyValue[1]);
+            } else {
+                throw new IllegalArgumentException("Expected key=value or --spec <file>, got " + args[idx]);
+            }
+        }
+
+        new BatchRunner(spec).run();
+    }
+
+    // At most parallelism trials, and so populations, are alive at once; the parsed problem and
+    // its distance matrix are shared by every trial on that problem, and dropped after its last.
+    void run() throws IOException, InterruptedException {
+        for (String problem : problems) {
+            int trials = 0;
+            for (String representation : representations) {
+                trials += crossoversFor(representation).size();
+            }
+            trials *= populations.size() * tournaments.size() * mutations.size() * models.size() * seeds.size();
+            remainingTrials.merge(problem, trials, Integer::sum);
+        }
+
+        if (out.getParent() != null) {
+            Files.createDirectories(out.getParent());
+        }
+        json = out.getFileName().toString().endsWith(".json");
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+        Semaphore slots = new Semaphore(parallelism);
+
+        try (BufferedWriter writer = Files.newBufferedWriter(out, StandardCharsets.UTF_8)) {
+            this.writer = writer;
+            if (!json) {
+                writeLine("kind,problem,representation,population,tournament,mutation,crossover,model,iterations,seed,"
+                        + "trials,best,mean,optimal,bestGap,meanGap,millis,generations,stop");
+            }
+
+            for (String problem : problems) {
+                for (String representation : representations) {
+                    for (int population : populations) {
+                        for (int tournament : tournaments) {
+                            for (double mutation : mutations) {
+                                for (String crossover : crossoversFor(representation)) {
+                                    for (DirectPopulation.GenerationModel model : models) {
+                                        Configuration configuration = new Configuration(problem, representation,
+                                                population, tournament, mutation, crossover, model);
+                                        for (long seed : seeds) {
+                                            slots.acquire();
+                                            executor.execute(() -> {
+                                                try {
+                                                    runTrial(configuration, seed);
+                                                } finally {
+                                                    slots.release();
+                                                }
+                                            });
+                                        }
+                                    }
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+        System.out.format("Wrote %s%n", out);
+    }
+
+    private void runTrial(Configuration configuration, long seed) {
+        long start = System.nanoTime();
+        int best = -1;
+        long generations = 0;
+        Termination termination = new Termination()
+                .withWallClock(Duration.ofSeconds(seconds))
+                .withEvaluationBudget(evaluations)
+                .withStagnationWindow(stagnation);
+        if (targetGap >= 0) {
+            termination.withTargetGap(optimalSolutions.get(configuration.problem), targetGap);
+        }
+
+        DirectPopulation population = null;
+        try {
+            DirectPopulation problem = loadedProblems.computeIfAbsent(configuration.problem,
+                    name -> new DirectPopulation(name, 2, 0, 0, 1));
+            population = configuration.representation.equals("direct")
+                    ? new DirectPopulation(problem, configuration.population, iterations, seed, 1)
+                    : configuration.representation.equals("random-key")
+                    ? new RandomKeyPopulation(problem, configuration.population, iterations, seed, 1)
+                    : new IndirectPopulation(problem, configuration.population, iterations, seed, 1);
+
+            if (!configuration.representation.equals("indirect")) {
+                population.useCrossover(configuration.crossover);
+            }
+            if (configuration.representation.equals("direct") && adaptive > 0) {
+                population.useAdaptiveRates(new AdaptiveRates(configuration.mutation, adaptive));
+            }
+            population.useGenerationModel(configuration.model, elites);
+            population.useTermination(termination);
+            population.createInitialPopulation();
+            termination.start();
+            while (!termination.shouldStop(population)) {
+                population.nextGeneration(configuration.tournament, configuration.mutation);
+            }
+            best = population.getGlobalBestFitness();
+            generations = population.getGeneration();
+        } catch (Throwable e) {
+            // Errors as well, e.g. running out of memory on a large instance, so that one trial
+            // cannot end the sweep or keep its configuration from being summarised.
+            System.err.format("Trial %s seed %d failed: %s%n", configuration, seed, e);
+        } finally {
+            if (population != null) {
+                population.close();
+            }
+        }
+
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        synchronized (this) {
+            if (best >= 0) {
+                writeRow("trial", configuration, String.valueOf(seed), 1, best, best, millis,
+                        String.valueOf(generations), termination.getReason().name().toLowerCase(Locale.ROOT));
+            } else {
+                writeRow("trial", configuration, String.valueOf(seed), 0, -1, Double.NaN, millis, "", "failed");
+            }
+            configuration.complete(best, millis);
+            if (configuration.completed == seeds.size()) {
+                writeSummary(configuration);
+            }
+            if (remainingTrials.merge(configuration.problem, -1, Integer::sum) == 0) {
+                DirectPopulation problem = loadedProblems.remove(configuration.problem);
+                if (problem != null) {
+                    problem.close();
+                }
+            }
+        }
+    }
+
+    private void writeSummary(Configuration configuration) {
+        int failed = configuration.completed - configuration.bests.size();
+        if (configuration.bests.isEmpty()) {
+            System.out.format("%s: all %d trials failed%n", configuration, failed);
+            return;
+        }
+        int best = configuration.bests.stream().mapToInt(Integer::intValue).min().getAsInt();
+        double mean = configuration.bests.stream().mapToInt(Integer::intValue).average().getAsDouble();
+        writeRow("summary", configuration, "", configuration.bests.size(), best, mean, configuration.millis, "", "");
+        System.out.format("%s: best %d, mean %.1f, gap %.2f%% (%d trials%s)%n", configuration, best, mean,
+                optimalSolutions.gap(configuration.problem, mean), configuration.bests.size(),
+                failed > 0 ? ", " + failed + " failed" : "");
+    }
+
+    // A failed trial is a row with no trials, whose best, mean and gaps are left empty.
+    private void writeRow(String kind, Configuration c, String seed, int trials, int best, double mean, long millis,
+                          String generations, String stop) {
+        int optimal = optimalSolutions.get(c.problem);
+        double bestGap = trials == 0 ? Double.NaN : optimalSolutions.gap(c.problem, best);
+        double meanGap = trials == 0 ? Double.NaN : optimalSolutions.gap(c.problem, mean);
+
+        if (json) {
+            writeLine(String.format(Locale.ROOT, "{\"kind\":\"%s\",\"problem\":\"%s\",\"representation\":\"%s\","
+                            + "\"population\":%d,\"tournament\":%d,\"mutation\":%s,\"crossover\":\"%s\","
+                            + "\"model\":\"%s\",\"iterations\":%d,\"seed\":%s,"
+                            + "\"trials\":%d,\"best\":%s,\"mean\":%s,\"optimal\":%s,\"bestGap\":%s,\"meanGap\":%s,"
+                            + "\"millis\":%d,\"generations\":%s,\"stop\":%s}",
+                    kind, c.problem, c.representation, c.population, c.tournament, c.mutation, c.crossover,
+                    c.modelName(), iterations, seed.isEmpty() ? "null" : seed, trials,
+                    trials == 0 ? "null" : String.valueOf(best),
+                    trials == 0 ? "null" : String.format(Locale.ROOT, "%.2f", mean), optimal < 0 ? "null" : optimal,
+                    jsonNumber(bestGap), jsonNumber(meanGap), millis, generations.isEmpty() ? "null" : generations,
+                    stop.isEmpty() ? "null" : "\"" + stop + "\""));
+        } else {
+            writeLine(String.format(Locale.ROOT, "%s,%s,%s,%d,%d,%s,%s,%s,%d,%s,%d,%s,%s,%s,%s,%s,%d,%s,%s",
+                    kind, c.problem, c.representation, c.population, c.tournament, c.mutation, c.crossover,
+                    c.modelName(), iterations, seed, trials,
+                    trials == 0 ? "" : String.valueOf(best),
+                    trials == 0 ? "" : String.format(Locale.ROOT, "%.2f", mean), optimal < 0 ? "" : optimal,
+                    Double.isNaN(bestGap) ? "" : String.format(Locale.ROOT, "%.3f", bestGap),
+                    Double.isNaN(meanGap) ? "" : String.format(Locale.ROOT, "%.3f", meanGap), millis, generations, stop));
+        }
+    }
+
+    // Every row is flushed, so an interrupted sweep keeps the trials that finished.
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to %s", out), e);
+        }
+    }
+
+    private List<String> crossoversFor(String representation) {
+        switch (representation) {
+            case "random-key": return keyCrossovers;
+            case "indirect": return NO_CROSSOVER;
+            default: return crossovers;
+        }
+    }
+
+    private static String jsonNumber(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static <T> List<T> parseList(String values, Function<String, T> parser) {
+        List<T> parsed = new ArrayList<>();
+        for (String value : values.split(",")) {
+            parsed.add(parser.apply(value.trim()));
+        }
+        return parsed;
+    }
+
+    private static List<Long> parseSeeds(String values) {
+        List<Long> parsed = new ArrayList<>();
+        for (String value : values.split(",")) {
+            int dash = value.indexOf('-', 1);
+            if (dash < 0) {
+                parsed.add(Long.parseLong(value.trim()));
+            } else {
+                long last = Long.parseLong(value.substring(dash + 1).trim());
+                for (long seed = Long.parseLong(value.substring(0, dash).trim()); seed <= last; seed++) {
+                    parsed.add(seed);
+                }
+            }
+        }
+        return parsed;
+    }
+
+    // One point of the sweep; its trials differ only in their seed. Guarded by the runner's lock.
+    private static class Configuration {
+
+        final String problem;
+        final String representation;
+        final int population;
+        final int tournament;
+        final double mutation;
+        final String crossover;
+        final DirectPopulation.GenerationModel model;
+
+        final List<Integer> bests = new ArrayList<>();
+        int completed;
+        long millis;
+
+        Configuration(String problem, String representation, int population, int tournament, double mutation,
+                      String crossover, DirectPopulation.GenerationModel model) {
+            this.problem = problem;
+            this.representation = representation;
+            this.population = population;
+            this.tournament = tournament;
+            this.mutation = mutation;
+            this.crossover = crossover;
+            this.model = model;
+        }
+
+        String modelName() {
+            return model.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        }
+
+        void complete(int best, long trialMillis) {
+            if (best >= 0) {
+                bests.add(best);
+            }
+            completed++;
+            millis += trialMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%s %s population %d tournament %d mutation %s %s %s",
+                    problem, representation, population, tournament, mutation, crossover, modelName());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.bester.tobias.tspassi;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+// Every interval generations the population thread copies its state into a buffer and a
+// background thread writes it out. A snapshot that is due while the previous one is still being
+// written is skipped rather than waited for, so a slow disk never holds up the search.
+public class Checkpointer implements AutoCloseable {
+
+    private final Path file;
+    private final int interval;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+
+    private long captureNanos;
+    private volatile int written;
+    private int skipped;
+
+    Checkpointer(Path file, int interval) {
+        this.file = file;
+        this.interval = Math.max(1, interval);
+    }
+
+    void afterGeneration(DirectPopulation population) {
+        if (population.getGeneration() % interval != 0) {
+            return;
+        }
+        if (pending != null && !pending.isDone()) {
+            skipped++;
+            return;
+        }
+
+        long start = System.nanoTime();
+        ByteBuffer snapshot = population.snapshot();
+        captureNanos += System.nanoTime() - start;
+        pending = writer.submit(() -> write(snapshot));
+    }
+
+    // Written to a temporary file first, so a crash mid-write leaves the previous snapshot intact.
+    private void write(ByteBuffer snapshot) {
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(tempFile,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                while (snapshot.hasRemaining()) {
+                    channel.write(snapshot);
+                }
+                channel.force(false);
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            written++;
+        } catch (IOException e) {
+            System.out.format("Could not write checkpoint %s: %s%n", file, e.getMessage());
+        }
+    }
+
+    static DirectPopulation resume(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException(String.format("%s ended early", file));
+                }
+            }
+            return DirectPopulation.restore(buffer.flip());
+        } catch (IllegalArgumentException | BufferUnderflowException e) {
+            throw new IOException(String.format("%s is not a usable checkpoint: %s", file, e.getMessage()), e);
+        }
+    }
+
+    // Waits for a snapshot that is still being written.
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Checkpointer{file=%s, written=%d, skipped=%d, capture=%.1f ms}",
+                file, written, skipped, captureNanos / 1e6);
+    }
+}
@@ -1,67 +1,189 @@
 package com.bester.tobias.tspassi;
 
-import java.util.*;
-import java.util.stream.IntStream;
+import java.util.SplittableRandom;
 
 public class Chromosome {
 
-    private final int id;
-    private List<City> cities;
-    private Integer currentFitness = Integer.MAX_VALUE;
+    private int id;
+    private final int[] tour;
+    private final DistanceMatrix distances;
+    private int currentFitness = Integer.MAX_VALUE;
 
-    Chromosome(int id, List<City> cities, boolean shuffleCities) {
+    // XOR of edgeHash over the tour's edges, so it does not depend on where the tour starts or
+    // which way it runs. Computed on first use and then kept up to date by the in-place operators.
+    private long hash;
+    private boolean hashValid;
+
+    Chromosome(int id, int numCities, DistanceMatrix distances, SplittableRandom random) {
         this.id = id;
-        this.cities = new ArrayList<>(cities);
-        if (shuffleCities) {
-            randomizeCities();
+        this.tour = new int[numCities];
+        this.distances = distances;
+        for (int idx = 0; idx < numCities; idx++) {
+            tour[idx] = idx;
         }
+        randomizeCities(random);
+        evaluate();
+    }
+
+    // Takes ownership of the tour, e.g. one read back from a checkpoint.
+    Chromosome(int id, int[] tour, DistanceMatrix distances) {
+        this.id = id;
+        this.tour = tour;
+        this.distances = distances;
         evaluate();
     }
 
     Chromosome(Chromosome copy) {
         this.id = copy.getId();
-        this.cities = new ArrayList<>(copy.getCities());
+        this.tour = copy.tour.clone();
+        this.distances = copy.distances;
         this.currentFitness = copy.getCurrentFitness();
+        this.hash = copy.hash;
+        this.hashValid = copy.hashValid;
+    }
+
+    void copyFrom(int id, Chromosome source) {
+        this.id = id;
+        System.arraycopy(source.tour, 0, tour, 0, tour.length);
+        this.currentFitness = source.getCurrentFitness();
+        this.hash = source.hash;
+        this.hashValid = source.hashValid;
+    }
+
+    int evaluate() {
+        currentFitness = tourLength();
+        hashValid = false;
+        return currentFitness;
     }
 
-    Integer evaluate() {
-        Optional<Integer> fitness = IntStream.range(0, cities.size() - 2)
-                .mapToObj(idx -> findDistanceBetweenCities(cities.get(idx), cities.get(idx + 1)))
-                .reduce(Integer::sum)
-                .map(sum -> sum + findDistanceBetweenFirstAndLastCity());
+    // Looks the tour up by its edge hash first and only measures it on a miss.
+    int evaluate(FitnessCache cache) {
+        if (cache == null) {
+            return evaluate();
+        }
 
-        currentFitness = fitness.orElse(Integer.MAX_VALUE);
+        hash = hashOf(tour);
+        hashValid = true;
+        currentFitness = cache.get(hash);
+        if (currentFitness == FitnessCache.MISS) {
+            currentFitness = tourLength();
+            cache.put(hash, currentFitness);
+        }
         return currentFitness;
     }
 
-    int[] getTwoRandomIndexes() {
-        Random r = new Random();
-        int idx1 = r.nextInt(cities.size());
-        int idx2 = r.nextInt(cities.size());
-        while (idx1 == idx2) {
-            idx2 = r.nextInt(cities.size());
+    void swap(int idx1, int idx2) {
+        int city = tour[idx1];
+        tour[idx1] = tour[idx2];
+        tour[idx2] = city;
+    }
+
+    // Only the edges touching the two positions change, so the cached fitness is adjusted by
+    // those four edges, or three when the positions are neighbours and share an edge.
+    void swapAndUpdateFitness(int idx1, int idx2) {
+        int size = tour.length;
+        if (size < 3) {
+            swap(idx1, idx2);
+            hashValid = false;
+            return;
+        }
+
+        int low = Math.min(idx1, idx2);
+        int high = Math.max(idx1, idx2);
+        if (hashValid) {
+            hash ^= edgeHashesAround(low) ^ edgeHashesAround(high);
+        }
+        int delta;
+
+        if (high - low == 1 || (low == 0 && high == size - 1)) {
+            int first = high - low == 1 ? low : high;
+            int second = high - low == 1 ? high : low;
+            int before = tour[first == 0 ? size - 1 : first - 1];
+            int after = tour[second == size - 1 ? 0 : second + 1];
+            delta = distances.distance(before, tour[second]) + distances.distance(tour[first], after)
+                    - distances.distance(before, tour[first]) - distances.distance(tour[second], after);
+        } else {
+            delta = edgesAround(low, tour[high]) + edgesAround(high, tour[low])
+                    - edgesAround(low, tour[low]) - edgesAround(high, tour[high]);
+        }
+
+        swap(low, high);
+        currentFitness += delta;
+        if (hashValid) {
+            // Edges shared by both positions cancel out in both XORs, so neighbours need no special case.
+            hash ^= edgeHashesAround(low) ^ edgeHashesAround(high);
+        }
+
+        assert currentFitness == tourLength()
+                : String.format("Delta fitness %d does not match full evaluation %d", currentFitness, tourLength());
+        assert !hashValid || hash == hashOf(tour) : "Delta tour hash does not match the tour";
+    }
+
+    // For operators that rewrite the tour in place and track the length change themselves, along
+    // with the XOR of the edge hashes they removed and added.
+    void adjustFitness(int delta, long hashDelta) {
+        currentFitness += delta;
+        hash ^= hashDelta;
+
+        assert currentFitness == tourLength()
+                : String.format("Adjusted fitness %d does not match full evaluation %d", currentFitness, tourLength());
+        assert !hashValid || hash == hashOf(tour) : "Adjusted tour hash does not match the tour";
+    }
+
+    long getHash() {
+        if (!hashValid) {
+            hash = hashOf(tour);
+            hashValid = true;
+        }
+        return hash;
+    }
+
+    static long hashOf(int[] cities) {
+        long hash = edgeHash(cities[cities.length - 1], cities[0]);
+        for (int idx = 0; idx < cities.length - 1; idx++) {
+            hash ^= edgeHash(cities[idx], cities[idx + 1]);
         }
+        return hash;
+    }
 
-        int[] result = new int[]{idx1, idx2};
-        Arrays.sort(result);
+    // Zobrist-style key of the undirected edge between two cities.
+    static long edgeHash(int city1, int city2) {
+        long key = (long) Math.min(city1, city2) << 32 | Math.max(city1, city2);
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
 
-        return result;
+    private long edgeHashesAround(int idx) {
+        int size = tour.length;
+        int city = tour[idx];
+        return edgeHash(tour[idx == 0 ? size - 1 : idx - 1], city) ^ edgeHash(city, tour[idx == size - 1 ? 0 : idx + 1]);
     }
 
-    private void randomizeCities() {
-        Collections.shuffle(this.cities, new Random(new Random().nextInt()));
+    private int edgesAround(int idx, int city) {
+        int size = tour.length;
+        int previous = tour[idx == 0 ? size - 1 : idx - 1];
+        int next = tour[idx == size - 1 ? 0 : idx + 1];
+        return distances.distance(previous, city) + distances.distance(city, next);
     }
 
-    private Integer findDistanceBetweenFirstAndLastCity() {
-        City firstCity = cities.get(0);
-        City lastCity = cities.get(cities.size() - 1);
-        return findDistanceBetweenCities(firstCity, lastCity);
+    private int tourLength() {
+        return lengthOf(tour);
+    }
+
+    // Length of any tour over this chromosome's cities, e.g. one decoded from an indirect genome.
+    int lengthOf(int[] cities) {
+        if (cities.length < 2) {
+            return Integer.MAX_VALUE;
+        }
+
+        return distances.tourLength(cities);
     }
 
-    private Integer findDistanceBetweenCities(City city1, City city2) {
-        double xd = city1.getX() - city2.getX();
-        double yd = city1.getY() - city2.getY();
-        return Math.round((float) Math.sqrt((xd * xd) + (yd * yd)));
+    private void randomizeCities(SplittableRandom random) {
+        for (int idx = tour.length - 1; idx > 0; idx--) {
+            swap(idx, random.nextInt(idx + 1));
+        }
     }
 
     @Override
@@ -72,19 +194,23 @@ public class Chromosome {
                 '}';
     }
 
-    private int getId() {
+    int getId() {
         return id;
     }
 
-    Integer getCurrentFitness() {
+    void setId(int id) {
+        this.id = id;
+    }
+
+    int getCurrentFitness() {
         return currentFitness;
     }
 
-    List<City> getCities() {
-        return cities;
+    int[] getTour() {
+        return tour;
     }
 
-    public void setCities(List<City> cities) {
-        Collections.copy(cities, this.cities);
+    int size() {
+        return tour.length;
     }
 }
@@ -1,30 +1,19 @@
 package com.bester.tobias.tspassi;
 
-import javafx.util.Pair;
-
 public class City {
 
     private int id;
 
-    private Double x;
-
-    private Double y;
+    private double x;
 
-    private Pair<Double, Double> coords;
+    private double y;
 
-    public City(int id, Double x, Double y) {
+    public City(int id, double x, double y) {
         this.id = id;
         this.x = x;
         this.y = y;
-        this.coords = new Pair<>(x, y);
     }
 
-    City(String id, String x, String y) {
-        this.id = Integer.valueOf(id);
-        this.x = Double.valueOf(x);
-        this.y = Double.valueOf(y);
-        this.coords = new Pair<>(this.x, this.y);
-    }
     @Override
     public String toString() {
         return String.format("%d", id);
@@ -34,15 +23,11 @@ public class City {
         return id;
     }
 
-    Double getX() {
+    double getX() {
         return x;
     }
 
-    Double getY() {
+    double getY() {
         return y;
     }
-
-    Pair<Double, Double> getCoords() {
-        return coords;
-    }
 }
@@ -0,0 +1,21 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public interface CrossoverOperator {
+
+    // Writes two children of the parents into child1 and child2, which have the parents' length.
+    // Operators keep scratch buffers between calls, so every worker has an instance of its own.
+    void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, SplittableRandom random);
+
+    // ox (order), pmx (partially mapped), erx (edge recombination) or eax (edge assembly).
+    static CrossoverOperator create(String name, DistanceMatrix distances, NeighborLists neighbors, double neighborBias) {
+        switch (name) {
+            case "ox": return new OrderCrossover(neighbors, neighborBias);
+            case "pmx": return new PartiallyMappedCrossover();
+            case "erx": return new EdgeRecombinationCrossover();
+            case "eax": return new EdgeAssemblyCrossover(distances, neighbors);
+            default: throw new IllegalArgumentException("Unknown crossover " + name);
+        }
+    }
+}
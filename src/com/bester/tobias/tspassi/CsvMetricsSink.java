@@ -0,0 +1,61 @@
+package com.bester.tobias.tspassi;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+public class CsvMetricsSink implements MetricsSink {
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    CsvMetricsSink(Path file) throws IOException {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+
+        StringBuilder header = new StringBuilder("generation,elapsedMillis,bestFitness,averageFitness,diversity,"
+                + "evaluations,evaluationsPerSecond,allocatedBytesPerGeneration");
+        for (Metrics.Phase phase : Metrics.Phase.values()) {
+            String name = phase.name().toLowerCase();
+            header.append(',').append(name).append("Count,").append(name).append("MeanNanos,")
+                    .append(name).append("P99Nanos,").append(name).append("TotalNanos");
+        }
+        writeLine(header.toString());
+    }
+
+    @Override
+    public void publish(MetricsSnapshot snapshot) {
+        StringBuilder row = new StringBuilder(String.format(Locale.ROOT, "%d,%d,%d,%.2f,%.4f,%d,%.1f,%d",
+                snapshot.generation, snapshot.elapsedMillis, snapshot.bestFitness, snapshot.averageFitness,
+                snapshot.diversity, snapshot.evaluations, snapshot.evaluationsPerSecond,
+                snapshot.allocatedBytesPerGeneration));
+        for (int idx = 0; idx < snapshot.phaseCount.length; idx++) {
+            row.append(String.format(Locale.ROOT, ",%d,%.1f,%d,%d", snapshot.phaseCount[idx],
+                    snapshot.phaseMeanNanos[idx], snapshot.phaseP99Nanos[idx], snapshot.phaseTotalNanos[idx]));
+        }
+        writeLine(row.toString());
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close %s", file), e);
+        }
+    }
+
+    private void writeLine(String line) {
+        try {
+            writer.write(line);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to %s", file), e);
+        }
+    }
+}
@@ -1,307 +1,846 @@
 package com.bester.tobias.tspassi;
 
-import javafx.scene.Scene;
-import javafx.scene.chart.LineChart;
-import javafx.scene.chart.NumberAxis;
-import javafx.scene.chart.XYChart;
-import javafx.scene.chart.XYChart.Data;
-import javafx.stage.Stage;
-
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntToLongFunction;
+import java.util.function.IntUnaryOperator;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
-public class DirectPopulation {
+public class DirectPopulation implements AutoCloseable {
+
+    // GENERATIONAL replaces every member each generation, ELITIST carries the best few over, and
+    // STEADY_STATE inserts each child in place of the worst member as soon as it is made.
+    enum GenerationModel {
+        GENERATIONAL, ELITIST, STEADY_STATE
+    }
+
+    private static final int LOCAL_SEARCH_NEIGHBORS = 10;
+    private static final double IMMIGRANT_FRACTION = 0.25;
+    private static final int SNAPSHOT_MAGIC = 0x54535053;
+    private static final int SNAPSHOT_VERSION = 2;
 
     protected String problemName;
     protected String comment;
     protected int dimension;
     protected int numChromosomes;
     protected int numIterations;
-    protected List<String> coords;
+    protected TspInstance instance;
     protected List<City> cities;
+    protected DistanceMatrix distances;
+    protected NeighborLists neighbors;
+    protected double neighborBias;
+    protected boolean memetic;
+    protected ParallelEngine engine;
+    protected FitnessCache fitnessCache;
+    protected Metrics metrics;
+    private FitnessCache localOptima;
     private List<Chromosome> chromosomes;
-
-    protected List<Number> averageFitnessHistory = new ArrayList<>();
-    protected List<Number> bestFitnessHistory = new ArrayList<>();
+    private List<Chromosome> offspring;
+    private List<Chromosome> parents;
+    private SelectionStrategy selection;
+    private int[] fitnessSnapshot = new int[0];
+    // Tour hash of each member and how many members have it, for the steady-state duplicate check.
+    private long[] memberHashes = new long[0];
+    private final Map<Long, Integer> membersWithHash = new HashMap<>();
+    private int[] selectedIndexes = new int[0];
+    private GenerationModel generationModel = GenerationModel.GENERATIONAL;
+    private int numElites;
+    private FitnessHeap heap;
+    private int[] bestSlots = new int[0];
+    private int[] worstSlots = new int[0];
+    private AdaptiveRates adaptiveRates;
+    private EdgeEntropy edges;
+
+    protected FitnessHistory averageFitnessHistory = new FitnessHistory();
+    protected FitnessHistory bestFitnessHistory = new FitnessHistory();
+    protected FitnessHistoryWriter historyWriter;
+    protected Checkpointer checkpointer;
+    protected int[] bestTour;
+    protected int bestTourFitness = Integer.MAX_VALUE;
+    protected long lastImprovement;
+    protected Termination termination;
+    private final LongAdder evaluations = new LongAdder();
 
     DirectPopulation(String problemName, int numChromosomes, int numIterations) {
+        this(problemName, numChromosomes, numIterations, System.nanoTime(), Runtime.getRuntime().availableProcessors());
+    }
+
+    DirectPopulation(String problemName, int numChromosomes, int numIterations, long seed, int numThreads) {
         this.problemName = problemName;
         this.numChromosomes = numChromosomes;
         this.numIterations = numIterations;
-        this.chromosomes = new ArrayList<>();
         readDataFromFile(problemName);
         saveCities();
+        distances = new DistanceMatrix(instance.getX(), instance.getY());
+        engine = new ParallelEngine(Math.min(numThreads, Math.max(1, numChromosomes / 2)), seed);
+    }
+
+    // Shares the parsed problem and distance matrix of an existing population, e.g. between islands.
+    DirectPopulation(DirectPopulation problem, int numChromosomes, int numIterations, long seed, int numThreads) {
+        this.problemName = problem.problemName;
+        this.comment = problem.comment;
+        this.dimension = problem.dimension;
+        this.instance = problem.instance;
+        this.cities = problem.cities;
+        this.distances = problem.distances;
+        this.neighbors = problem.neighbors;
+        this.neighborBias = problem.neighborBias;
+        this.numChromosomes = numChromosomes;
+        this.numIterations = numIterations;
+        engine = new ParallelEngine(Math.min(numThreads, Math.max(1, numChromosomes / 2)), seed);
     }
 
     void createInitialPopulation() {
         System.out.println(String.format("Creating Initial DirectPopulation of %d chromosomes", numChromosomes));
-        IntStream.range(0, numChromosomes).forEach(cIdx -> chromosomes.add(new Chromosome(cIdx, cities, true)));
+        Chromosome[] initial = new Chromosome[numChromosomes];
+        engine.run(numChromosomes, (worker, from, to) -> IntStream.range(from, to).forEach(cIdx ->
+                initial[cIdx] = new Chromosome(cIdx, cities.size(), distances, worker.random)));
+
+        chromosomes = new ArrayList<>(Arrays.asList(initial));
+        offspring = chromosomes.stream().map(Chromosome::new).collect(Collectors.toList());
+        parents = new ArrayList<>(chromosomes);
+        edges = null;
     }
 
-    void startSearch(int tournamentSize, double mutationProbability) {
-        System.out.println("Starting search");
-        IntStream.range(0, numIterations).forEach(idx -> {
-            System.out.format("Starting iteration %d%n", idx);
-            evaluatePopulation();
+    // Operators use the k nearest cities with probability bias and stay uniform otherwise.
+    void useNeighborLists(int k, double bias) {
+        neighbors = new NeighborLists(instance.getX(), instance.getY(), k);
+        neighborBias = bias;
+    }
 
-            List<Chromosome> parents = selectParents(tournamentSize);
+    // Lists built once for the problem, e.g. by a ProblemCache. Local search and edge assembly use
+    // them as well instead of building their own.
+    void useNeighborLists(NeighborLists neighbors, double bias) {
+        this.neighbors = neighbors;
+        neighborBias = bias;
+    }
 
-            chromosomes = new ArrayList<>(applyOperators(parents, mutationProbability));
-            averageFitnessHistory.add(calculateAverageFitness());
-            bestFitnessHistory.add(calculateBestFitness());
-        });
+    // Children are looked up by tour hash before they are measured, and in memetic mode tours that
+    // local search already left at a local optimum are not searched again.
+    void useFitnessCache(int capacity) {
+        fitnessCache = new FitnessCache(capacity);
+        localOptima = new FitnessCache(capacity);
     }
 
-    void printHistory() {
-        System.out.format("Average Fitness: %s%n", averageFitnessHistory);
-        System.out.format("Best fitness: %s%n", bestFitnessHistory);
-        System.out.format("Global best fitness: %s%n",
-                bestFitnessHistory.stream().min(Comparator.comparing(Number::intValue)).orElse(99999));
+    void useMetrics(Metrics metrics) {
+        this.metrics = metrics;
     }
 
-    void printAverageFitnessGraph() {
-        printGraph(averageFitnessHistory, "Average Fitness");
+    // Every generation is also written to the writer; the in-memory histories are downsampled.
+    void useHistoryWriter(FitnessHistoryWriter historyWriter) {
+        this.historyWriter = historyWriter;
     }
 
-    void printBestFitnessGraph() {
-        printGraph(bestFitnessHistory, "Best Fitness");
+    void useCheckpoints(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
     }
 
-    private void printGraph(List<Number> history, String label) {
-        Stage stage = new Stage();
-        stage.setTitle("Fitness over time");
-        NumberAxis xAxis = new NumberAxis();
-        xAxis.setLabel("Iterations");
-        NumberAxis yAxis = new NumberAxis();
-        yAxis.setLabel(label);
+    void useTermination(Termination termination) {
+        this.termination = termination;
+    }
 
-        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+    // ox (the default), pmx, erx or eax; see CrossoverOperator. Edge assembly needs neighbour
+    // lists and gets the local search ones if there are none yet.
+    void useCrossover(String name) {
+        if (name.equals("eax") && neighbors == null) {
+            neighbors = new NeighborLists(instance.getX(), instance.getY(), LOCAL_SEARCH_NEIGHBORS);
+        }
+        engine.forEachWorker(worker -> worker.crossover = CrossoverOperator.create(name, distances, neighbors, neighborBias));
+    }
 
-        XYChart.Series series = new XYChart.Series();
-        series.setName("Fitness over time");
+    void useSelectionStrategy(SelectionStrategy selection) {
+        this.selection = selection;
+    }
 
-        IntStream.range(0, numIterations).forEach(idx ->
-                series.getData().add(new Data(idx + 1, history.get(idx))));
+    // numElites only matters for ELITIST. A steady-state generation makes as many children as a
+    // generational one, so histories and evaluation counts stay comparable between models.
+    void useGenerationModel(GenerationModel generationModel, int numElites) {
+        this.generationModel = generationModel;
+        this.numElites = Math.max(0, Math.min(numElites, numChromosomes));
+    }
 
-        Scene scene = new Scene(lineChart, 800, 600);
-        lineChart.getData().add(series);
+    GenerationModel getGenerationModel() {
+        return generationModel;
+    }
 
-        stage.setScene(scene);
-        stage.show();
+    int getNumElites() {
+        return numElites;
     }
 
-    protected Integer calculateBestFitness() {
-        Optional<Integer> lowest = chromosomes.stream()
-                .map(Chromosome::getCurrentFitness)
-                .min(Integer::compareTo);
+    // The mutation probability passed to nextGeneration is ignored from now on; rates follows the
+    // population's edge entropy instead and injects immigrants or restarts when it collapses.
+    void useAdaptiveRates(AdaptiveRates rates) {
+        adaptiveRates = rates;
+    }
 
-        return lowest.orElse(9999);
+    // Memetic mode: after every generation each child is improved by 2-opt and Or-opt, limited to
+    // maxMoves improving moves and maxNanos per chromosome (zero for no limit).
+    void useLocalSearch(int maxMoves, long maxNanos) {
+        if (neighbors == null) {
+            neighbors = new NeighborLists(instance.getX(), instance.getY(), LOCAL_SEARCH_NEIGHBORS);
+        }
+        engine.forEachWorker(worker -> worker.localSearch = new LocalSearch(distances, neighbors, maxMoves, maxNanos));
+        memetic = true;
     }
 
-    protected float calculateAverageFitness() {
-        Optional<Integer> sum = chromosomes.stream()
-                .map(Chromosome::getCurrentFitness)
-                .reduce(Integer::sum);
+    // Runs until numIterations generations or, when one is set, until the termination says so, and
+    // returns the best-so-far tour.
+    int[] startSearch(int tournamentSize, double mutationProbability) {
+        System.out.println("Starting search");
+        if (termination == null) {
+            for (long generation = getGeneration(); generation < numIterations; generation++) {
+                nextGeneration(tournamentSize, mutationProbability);
+            }
+            return getBestTour();
+        }
 
-        return sum.orElse(0) / ((float) chromosomes.size());
+        termination.start();
+        while (!termination.shouldStop(this)) {
+            nextGeneration(tournamentSize, mutationProbability);
+        }
+        System.out.format("Stopped after %d generations and %d evaluations: %s%n", getGeneration(), getEvaluations(),
+                termination.getReason());
+        return getBestTour();
     }
 
-    protected void evaluatePopulation() {
-        IntStream.range(0, chromosomes.size()).forEach(cIdx -> chromosomes.get(cIdx).evaluate());
+    void nextGeneration(int tournamentSize, double mutationProbability) {
+        engine.reseed(getGeneration());
+        if (adaptiveRates != null) {
+            mutationProbability = adaptiveRates.getMutationProbability();
+        }
+        if (generationModel == GenerationModel.STEADY_STATE) {
+            steadyStateGeneration(tournamentSize, mutationProbability);
+            recordGeneration();
+            adaptRates();
+            return;
+        }
+
+        int[] elites = generationModel == GenerationModel.ELITIST && numElites > 0
+                ? bestSlots(idx -> chromosomes.get(idx).getCurrentFitness(), chromosomes.size(), numElites)
+                : null;
+        long start = startTimer();
+        List<Chromosome> parents = selectParents(tournamentSize);
+        stopTimer(Metrics.Phase.SELECT, start);
+
+        chromosomes = applyOperators(parents, mutationProbability);
+        if (memetic) {
+            improveOffspring();
+        }
+        if (elites != null) {
+            // The previous generation is untouched in the spare list until the next one is made.
+            int[] worst = worstSlots(idx -> chromosomes.get(idx).getCurrentFitness(), chromosomes.size(), elites.length);
+            for (int idx = 0; idx < elites.length; idx++) {
+                Chromosome elite = offspring.get(elites[idx]);
+                Chromosome replaced = chromosomes.get(worst[idx]);
+                if (elite.getCurrentFitness() < replaced.getCurrentFitness()) {
+                    replaced.copyFrom(replaced.getId(), elite);
+                }
+            }
+        }
+        if (edges != null) {
+            for (int idx = 0; idx < chromosomes.size(); idx++) {
+                edges.replace(offspring.get(idx).getTour(), chromosomes.get(idx).getTour());
+            }
+        }
+        recordGeneration();
+        adaptRates();
     }
 
-    private List<Chromosome> selectParents(int tSize) {
-        return IntStream.range(0, chromosomes.size())
-                .mapToObj(value -> tournamentSelection(tSize))
-                .collect(Collectors.toList());
+    // Edge counts are taken in full once, after the first generation with adaptive rates; from
+    // then on every replacement keeps them up to date. Immigrants and restarts take the worst
+    // slots and never the best member.
+    private void adaptRates() {
+        if (adaptiveRates == null) {
+            return;
+        }
+        if (edges == null) {
+            edges = new EdgeEntropy(dimension, chromosomes.size());
+            chromosomes.forEach(chromosome -> edges.add(chromosome.getTour()));
+        }
+
+        AdaptiveRates.Action action = adaptiveRates.afterGeneration(edges.diversity(), bestTourFitness,
+                getGeneration());
+        if (action == AdaptiveRates.Action.NONE) {
+            return;
+        }
+        int count = action == AdaptiveRates.Action.RESTART ? chromosomes.size() - 1
+                : Math.max(1, (int) (chromosomes.size() * IMMIGRANT_FRACTION));
+        ParallelEngine.Worker worker = engine.getWorker(0);
+        for (int slot : worstSlots(idx -> chromosomes.get(idx).getCurrentFitness(), chromosomes.size(), count)) {
+            Chromosome immigrant = new Chromosome(slot, dimension, distances, worker.random);
+            if (memetic) {
+                improve(immigrant, worker);
+            }
+            Chromosome replaced = chromosomes.get(slot);
+            edges.replace(replaced.getTour(), immigrant.getTour());
+            replaced.copyFrom(slot, immigrant);
+        }
+        countEvaluations(count);
     }
 
-    private Chromosome tournamentSelection(int tSize) {
-        List<Chromosome> tournament = new ArrayList<>(chromosomes);
-        Collections.shuffle(tournament);
-        tournament = tournament.subList(0, tSize);
-        Optional<Chromosome> chromosome = tournament.stream().min(Comparator.comparing(Chromosome::evaluate));
-        return chromosome.orElse(chromosomes.get(0));
+    // Children are made one operator at a time in the two spare chromosomes on worker 0 and
+    // copied over the worst member if they beat it, so a generation allocates nothing. A
+    // population of one has a single spare and only ever mutates.
+    private void steadyStateGeneration(int tournamentSize, double mutationProb) {
+        ParallelEngine.Worker worker = engine.getWorker(0);
+        int size = chromosomes.size();
+        prepareSteadyState(idx -> chromosomes.get(idx).getCurrentFitness(), idx -> chromosomes.get(idx).getHash(), size,
+                tournamentSize);
+        Chromosome child1 = offspring.get(0);
+        Chromosome child2 = size > 1 ? offspring.get(1) : null;
+
+        int produced = 0;
+        while (produced < size) {
+            long start = startTimer();
+            Chromosome parent1 = chromosomes.get(selectParent(worker.random));
+            Chromosome parent2 = chromosomes.get(selectParent(worker.random));
+            stopTimer(Metrics.Phase.SELECT, start);
+
+            if (produced + 1 < size && worker.random.nextFloat() > mutationProb) {
+                crossover(parent1, parent2, child1, child2, 0, worker);
+                insertChild(child1, worker);
+                insertChild(child2, worker);
+                produced += 2;
+            } else {
+                mutation(parent1, child1, 0, worker.random);
+                insertChild(child1, worker);
+                produced++;
+            }
+        }
     }
 
-    private List<Chromosome> applyOperators(List<Chromosome> chromosomes, double mutationProb) {
-        int targetSize = chromosomes.size();
-        List<Chromosome> newGen = new ArrayList<>();
-        float r;
-        int idCounter = 0;
+    private void insertChild(Chromosome child, ParallelEngine.Worker worker) {
+        if (memetic) {
+            improve(child, worker);
+        }
+        int slot = replaceableSlot(child.getCurrentFitness(), child.getHash());
+        if (slot >= 0) {
+            Chromosome replaced = chromosomes.get(slot);
+            if (edges != null) {
+                edges.replace(replaced.getTour(), child.getTour());
+            }
+            replaced.copyFrom(replaced.getId(), child);
+            replacedSlot(slot, child.getCurrentFitness(), child.getHash());
+        }
+    }
 
-        while (!chromosomes.isEmpty()) {
-            r = new Random().nextFloat();
+    // Rebuilds the worst-first heap, the member hash counts and the fitness snapshot that
+    // steady-state selection reads. Tournaments see every replacement at once; rank-based
+    // strategies rank once per generation.
+    protected void prepareSteadyState(IntUnaryOperator fitnessOf, IntToLongFunction hashOf, int size,
+                                      int tournamentSize) {
+        prepareSelection(fitnessOf, size, tournamentSize);
+        heapFor(size);
+        if (memberHashes.length != size) {
+            memberHashes = new long[size];
+        }
+        membersWithHash.clear();
+        for (int idx = 0; idx < size; idx++) {
+            heap.add(idx, fitnessSnapshot[idx]);
+            memberHashes[idx] = hashOf.applyAsLong(idx);
+            membersWithHash.merge(memberHashes[idx], 1, Integer::sum);
+        }
+    }
 
-            if (chromosomes.size() > 1 && r > mutationProb) {
-                List<Chromosome> selected = getTwoRandomChromosomesFromList(chromosomes);
-                newGen.addAll(crossover(selected.get(0), idCounter++, selected.get(1), idCounter++));
-            } else {
-                Chromosome selected = getRandomChromosomeFromList(chromosomes);
-                newGen.add(mutation(selected, idCounter++));
+    protected int selectParent(SplittableRandom random) {
+        return selection.select(fitnessSnapshot, random);
+    }
+
+    // The slot a child may replace: the worst member, provided the child is strictly shorter and
+    // not a copy of a member already there. Otherwise -1.
+    protected int replaceableSlot(int fitness, long hash) {
+        if (fitness >= heap.peekFitness() || membersWithHash.containsKey(hash)) {
+            return -1;
+        }
+        return heap.peek();
+    }
+
+    protected void replacedSlot(int slot, int fitness, long hash) {
+        fitnessSnapshot[slot] = fitness;
+        heap.update(slot, fitness);
+        membersWithHash.computeIfPresent(memberHashes[slot], (replaced, count) -> count == 1 ? null : count - 1);
+        membersWithHash.merge(hash, 1, Integer::sum);
+        memberHashes[slot] = hash;
+    }
+
+    // The count best slots, best first, and the count worst slots, worst first. Both arrays are
+    // reused between generations.
+    protected int[] bestSlots(IntUnaryOperator fitnessOf, int size, int count) {
+        if (bestSlots.length != count) {
+            bestSlots = new int[count];
+        }
+        FitnessHeap bounded = heapFor(size);
+        for (int idx = 0; idx < size && count > 0; idx++) {
+            int fitness = fitnessOf.applyAsInt(idx);
+            if (bounded.size() < count) {
+                bounded.add(idx, fitness);
+            } else if (fitness < bounded.peekFitness()) {
+                bounded.poll();
+                bounded.add(idx, fitness);
             }
         }
+        for (int idx = bounded.size() - 1; idx >= 0; idx--) {
+            bestSlots[idx] = bounded.poll();
+        }
+        return bestSlots;
+    }
 
-        assert newGen.size() == targetSize;
+    protected int[] worstSlots(IntUnaryOperator fitnessOf, int size, int count) {
+        if (worstSlots.length != count) {
+            worstSlots = new int[count];
+        }
+        FitnessHeap all = heapFor(size);
+        for (int idx = 0; idx < size; idx++) {
+            all.add(idx, fitnessOf.applyAsInt(idx));
+        }
+        for (int idx = 0; idx < count; idx++) {
+            worstSlots[idx] = all.poll();
+        }
+        return worstSlots;
+    }
 
-        return newGen;
+    private FitnessHeap heapFor(int size) {
+        heap = heap != null && heap.capacity() >= size ? heap : new FitnessHeap(size);
+        heap.clear();
+        return heap;
     }
 
-    private Chromosome mutation(Chromosome chromosome, int idCounter) {
+    protected void recordGeneration() {
+        int best = calculateBestFitness();
+        float average = calculateAverageFitness();
+        averageFitnessHistory.add(average);
+        bestFitnessHistory.add(best);
+        if (best < bestTourFitness) {
+            bestTourFitness = best;
+            bestTour = currentBestTour();
+            lastImprovement = getGeneration();
+        }
+        if (historyWriter != null) {
+            historyWriter.append(bestFitnessHistory.size(), best, average);
+        }
+        if (metrics != null) {
+            metrics.endGeneration(this);
+        }
+        if (checkpointer != null) {
+            checkpointer.afterGeneration(this);
+        }
+    }
 
-        int[] indexes =  chromosome.getTwoRandomIndexes();
-        int idx1 = indexes[0];
-        int idx2 = indexes[1];
+    // A copy of the best tour in the current generation.
+    protected int[] currentBestTour() {
+        return chromosomes.stream().min(Comparator.comparingInt(Chromosome::getCurrentFitness))
+                .map(chromosome -> chromosome.getTour().clone())
+                .orElse(null);
+    }
 
-        List<City> newCities = new ArrayList<>(chromosome.getCities());
-        Collections.swap(newCities, idx1, idx2);
-        return new Chromosome(idCounter, newCities, false);
+    // Generations completed so far, including those before a resume.
+    long getGeneration() {
+        return bestFitnessHistory.size();
     }
 
-    private List<Chromosome> crossover(Chromosome chromosome1, int id1, Chromosome chromosome2, int id2) {
+    // The shortest tour seen in any generation, or null before the first one.
+    int[] getBestTour() {
+        return bestTour;
+    }
 
-        int[] indexes =  chromosome1.getTwoRandomIndexes();
-        int idx1 = indexes[0];
-        int idx2 = indexes[1];
-        Chromosome child1 = new Chromosome(chromosome1);
-        Chromosome child2 = new Chromosome(chromosome2);
+    // Layout, little-endian: magic, version, representation (0 direct, 1 indirect, 2 random-key),
+    // seed, threads, generation, chromosomes, iterations, cities, problem name, best-so-far fitness
+    // and tour, both histories and then the population as written by writePopulation. The random
+    // state needs no space of its own because every generation reseeds the workers from the seed
+    // and the generation number.
+    ByteBuffer snapshot() {
+        byte[] name = problemName.getBytes(StandardCharsets.UTF_8);
+        int bytes = 4 + 4 + 1 + 8 + 4 + 8 + 4 + 4 + 4 + 2 + name.length + 4 + 4 * dimension
+                + averageFitnessHistory.snapshotBytes() + bestFitnessHistory.snapshotBytes() + populationSnapshotBytes();
+        ByteBuffer buffer = ByteBuffer.allocate(bytes).order(ByteOrder.LITTLE_ENDIAN);
+
+        byte representation = (byte) (this instanceof IndirectPopulation ? 1 : this instanceof RandomKeyPopulation ? 2 : 0);
+        buffer.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).put(representation);
+        buffer.putLong(engine.getSeed()).putInt(engine.getNumThreads()).putLong(getGeneration());
+        buffer.putInt(numChromosomes).putInt(numIterations).putInt(dimension);
+        buffer.putShort((short) name.length).put(name);
+        buffer.putInt(bestTourFitness);
+        putTour(buffer, bestTour == null ? new int[dimension] : bestTour);
+        averageFitnessHistory.writeTo(buffer);
+        bestFitnessHistory.writeTo(buffer);
+        writePopulation(buffer);
+
+        return buffer.flip();
+    }
 
-        List<City> parent1Cities = chromosome1.getCities();
-        List<City> parent2Cities = chromosome2.getCities();
-        List<City> child1Cities = getEmptyListOfCities(child1.getCities().size());
-        List<City> child2Cities = getEmptyListOfCities(child2.getCities().size());
+    static DirectPopulation restore(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != SNAPSHOT_MAGIC || buffer.getInt() != SNAPSHOT_VERSION) {
+            throw new IllegalArgumentException("Not a population snapshot of this version");
+        }
+        byte representation = buffer.get();
+        long seed = buffer.getLong();
+        int numThreads = buffer.getInt();
+        long generation = buffer.getLong();
+        int numChromosomes = buffer.getInt();
+        int numIterations = buffer.getInt();
+        int dimension = buffer.getInt();
+        byte[] name = new byte[buffer.getShort()];
+        buffer.get(name);
+        String problemName = new String(name, StandardCharsets.UTF_8);
+
+        DirectPopulation population = representation == 1
+                ? new IndirectPopulation(problemName, numChromosomes, numIterations, seed, numThreads)
+                : representation == 2
+                ? new RandomKeyPopulation(problemName, numChromosomes, numIterations, seed, numThreads)
+                : new DirectPopulation(problemName, numChromosomes, numIterations, seed, numThreads);
+        if (population.dimension != dimension) {
+            throw new IllegalArgumentException(String.format("Snapshot has %d cities but %s has %d",
+                    dimension, problemName, population.dimension));
+        }
 
-        List<Integer> frozenCities1 = parent1Cities.subList(idx1, idx2).stream()
-                .map(City::getId)
-                .collect(Collectors.toList());
-        List<Integer> frozenCities2 = parent2Cities.subList(idx1, idx2).stream()
-                .map(City::getId)
-                .collect(Collectors.toList());
+        population.bestTourFitness = buffer.getInt();
+        population.bestTour = getTour(buffer, dimension);
+        population.averageFitnessHistory = FitnessHistory.readFrom(buffer);
+        population.bestFitnessHistory = FitnessHistory.readFrom(buffer);
+        population.readPopulation(buffer);
+        if (population.getGeneration() != generation) {
+            throw new IllegalArgumentException("Snapshot history does not match its generation");
+        }
+        // Stagnation and evaluation budgets start over in the resumed run.
+        population.lastImprovement = generation;
+        return population;
+    }
 
-        IntStream.range(idx1, idx2 + 1).forEach(idx -> {
-            child1Cities.set(idx, parent1Cities.get(idx));
-            child2Cities.set(idx, parent2Cities.get(idx));
-        });
+    protected int populationSnapshotBytes() {
+        return chromosomes.size() * 4 * dimension;
+    }
+
+    protected void writePopulation(ByteBuffer buffer) {
+        chromosomes.forEach(chromosome -> putTour(buffer, chromosome.getTour()));
+    }
+
+    protected void readPopulation(ByteBuffer buffer) {
+        Chromosome[] restored = new Chromosome[numChromosomes];
+        for (int idx = 0; idx < numChromosomes; idx++) {
+            restored[idx] = new Chromosome(idx, getTour(buffer, dimension), distances);
+        }
+        chromosomes = new ArrayList<>(Arrays.asList(restored));
+        offspring = chromosomes.stream().map(Chromosome::new).collect(Collectors.toList());
+        parents = new ArrayList<>(chromosomes);
+        edges = null;
+    }
 
-        fillChildCities(child1Cities, frozenCities1, parent2Cities, idx1, idx2);
-        fillChildCities(child2Cities, frozenCities2, parent1Cities, idx1, idx2);
+    protected static void putTour(ByteBuffer buffer, int[] tour) {
+        buffer.asIntBuffer().put(tour);
+        buffer.position(buffer.position() + 4 * tour.length);
+    }
 
-        List<Chromosome> results = new ArrayList<>();
-        results.add(new Chromosome(id1, child1Cities, false));
-        results.add(new Chromosome(id2, child2Cities, false));
-        return results;
+    protected static int[] getTour(ByteBuffer buffer, int length) {
+        int[] tour = new int[length];
+        buffer.asIntBuffer().get(tour);
+        buffer.position(buffer.position() + 4 * length);
+        return tour;
     }
 
-    private void fillChildCities(
-            List<City> childCities,
-            List<Integer> frozenCities,
-            List<City> parentCities,
-            int idx1,
-            int idx2
-    ) {
-        AtomicInteger rangeCounter = new AtomicInteger(0);
+    // Timers only read the clock when metrics are on. stopTimer returns the time it stopped at,
+    // so consecutive phases can share one clock read.
+    protected long startTimer() {
+        return metrics == null ? 0 : System.nanoTime();
+    }
 
-        IntStream.range(0, parentCities.size()).forEach(idx -> {
-            int cityId = parentCities.get(idx).getId();
+    protected long stopTimer(Metrics.Phase phase, long start) {
+        if (metrics == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        metrics.record(phase, now - start);
+        return now;
+    }
 
-            if (!indexIsOutsideOfRange(rangeCounter.get(), idx1, idx2)) {
-                rangeCounter.set(idx2);
+    protected void countEvaluations(int count) {
+        evaluations.add(count);
+        if (metrics != null) {
+            metrics.countEvaluations(count);
+        }
+    }
+
+    long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    // Fraction of the population with a distinct tour, where rotations and reversals count as one,
+    // or the scaled edge entropy while adaptive rates track it.
+    protected double diversity() {
+        if (edges != null) {
+            return edges.diversity();
+        }
+        long[] hashes = chromosomes.stream().mapToLong(Chromosome::getHash).toArray();
+        return distinctFraction(hashes);
+    }
+
+    protected static double distinctFraction(long[] hashes) {
+        if (hashes.length == 0) {
+            return 0;
+        }
+        Arrays.sort(hashes);
+        int distinct = 1;
+        for (int idx = 1; idx < hashes.length; idx++) {
+            if (hashes[idx] != hashes[idx - 1]) {
+                distinct++;
             }
+        }
+        return distinct / (double) hashes.length;
+    }
 
-            if (!frozenCities.contains(cityId)) {
-                childCities.set(rangeCounter.getAndIncrement(), parentCities.get(idx));
+    List<?> copyBest(int count) {
+        return chromosomes.stream()
+                .sorted(Comparator.comparingInt(Chromosome::getCurrentFitness))
+                .limit(count)
+                .map(Chromosome::new)
+                .collect(Collectors.toList());
+    }
+
+    // Immigrants overwrite the worst chromosomes in place, so the offspring pool is untouched.
+    void replaceWorst(List<?> immigrants) {
+        List<Chromosome> worstFirst = chromosomes.stream()
+                .sorted(Comparator.comparingInt(Chromosome::getCurrentFitness).reversed())
+                .limit(immigrants.size())
+                .collect(Collectors.toList());
+
+        for (int idx = 0; idx < worstFirst.size(); idx++) {
+            Chromosome immigrant = (Chromosome) immigrants.get(idx);
+            if (immigrant.getCurrentFitness() < worstFirst.get(idx).getCurrentFitness()) {
+                if (edges != null) {
+                    edges.replace(worstFirst.get(idx).getTour(), immigrant.getTour());
+                }
+                worstFirst.get(idx).copyFrom(immigrant.getId(), immigrant);
             }
+        }
+    }
 
-        });
+    // Stops the engine's threads; the population's results stay readable.
+    @Override
+    public void close() {
+        engine.close();
+    }
+
+    void printHistory() {
+        System.out.format("Average Fitness: %s%n", averageFitnessHistory);
+        System.out.format("Best fitness: %s%n", bestFitnessHistory);
+        System.out.format("Global best fitness: %d%n", getGlobalBestFitness());
+        if (fitnessCache != null) {
+            System.out.format("Fitness cache: %s%n", fitnessCache);
+        }
+        if (memetic && localOptima != null) {
+            System.out.format("Local optimum cache: %s%n", localOptima);
+        }
+        if (adaptiveRates != null) {
+            System.out.println(adaptiveRates);
+        }
+    }
+
+    int getGlobalBestFitness() {
+        return bestFitnessHistory.size() == 0 ? Integer.MAX_VALUE : (int) bestFitnessHistory.getMin();
+    }
+
+    protected Integer calculateBestFitness() {
+        int lowest = Integer.MAX_VALUE;
+        for (Chromosome chromosome : chromosomes) {
+            lowest = Math.min(lowest, chromosome.getCurrentFitness());
+        }
 
-        if (!checkForDuplicates(childCities)) {
-            System.out.println("AAAAAAAAAAAAAAAAAH\n\n\n\n\n");
+        return chromosomes.isEmpty() ? 9999 : lowest;
+    }
+
+    protected float calculateAverageFitness() {
+        long sum = 0;
+        for (Chromosome chromosome : chromosomes) {
+            sum += chromosome.getCurrentFitness();
         }
 
+        return sum / ((float) chromosomes.size());
+    }
+
+    private List<Chromosome> selectParents(int tSize) {
+        int[] selected = selectParentIndexes(idx -> chromosomes.get(idx).getCurrentFitness(), chromosomes.size(), tSize);
+        for (int idx = 0; idx < selected.length; idx++) {
+            parents.set(idx, chromosomes.get(selected[idx]));
+        }
+        return parents;
     }
 
-    private boolean checkForDuplicates(List<City> childCities) {
-        Set<Integer> set = new HashSet<>();
-        AtomicBoolean result = new AtomicBoolean(true);
-        childCities.stream()
-                .map(City::getId)
-                .forEach(integer -> {
-                    if (!set.add(integer)) {
-                        result.set(false);
-                    }
-                });
+    // Snapshots the cached fitnesses and lets the selection strategy fill parent indexes in
+    // parallel chunks. Without a configured strategy this is tournament selection without
+    // replacement, as it always was.
+    protected int[] selectParentIndexes(IntUnaryOperator fitnessOf, int size, int tournamentSize) {
+        prepareSelection(fitnessOf, size, tournamentSize);
+        engine.run(size, (worker, from, to) -> selection.select(fitnessSnapshot, selectedIndexes, from, to, worker.random));
 
-        return result.get();
+        return selectedIndexes;
     }
 
-    private boolean indexIsOutsideOfRange(int index, int bound1, int bound2) {
-        return (index < bound1 || index > bound2);
+    private void prepareSelection(IntUnaryOperator fitnessOf, int size, int tournamentSize) {
+        if (selection == null) {
+            selection = new TournamentSelection(tournamentSize, false);
+        }
+        if (fitnessSnapshot.length != size) {
+            fitnessSnapshot = new int[size];
+            selectedIndexes = new int[size];
+        }
+
+        for (int idx = 0; idx < size; idx++) {
+            fitnessSnapshot[idx] = fitnessOf.applyAsInt(idx);
+        }
+        selection.prepare(fitnessSnapshot);
     }
 
-    private List<City> getEmptyListOfCities(int size) {
-        return new ArrayList<>(Collections.nCopies(size, null));
+    // Tournament winners are drawn independently, so pairing them in order is as random as
+    // drawing pairs from the list. Children are written into the spare generation in offspring,
+    // and pairs never straddle two workers' chunks.
+    private List<Chromosome> applyOperators(List<Chromosome> parents, double mutationProb) {
+        engine.run(parents.size(), (worker, from, to) -> {
+            int idx = from;
+
+            while (idx < to) {
+                float r = worker.random.nextFloat();
+
+                if (idx + 1 < to && r > mutationProb) {
+                    crossover(parents.get(idx), parents.get(idx + 1), offspring.get(idx), offspring.get(idx + 1), idx, worker);
+                    idx += 2;
+                } else {
+                    mutation(parents.get(idx), offspring.get(idx), idx, worker.random);
+                    idx++;
+                }
+            }
+        });
+
+        List<Chromosome> newGen = offspring;
+        offspring = chromosomes;
+        return newGen;
     }
 
-    private Chromosome getRandomChromosomeFromList(List<Chromosome> list) {
-        Chromosome result = list.get(new Random().nextInt(list.size()));
-        list.remove(result);
-        return result;
+    private void improveOffspring() {
+        engine.run(chromosomes.size(), (worker, from, to) -> {
+            for (int idx = from; idx < to; idx++) {
+                improve(chromosomes.get(idx), worker);
+            }
+        });
     }
 
-    private List<Chromosome> getTwoRandomChromosomesFromList(List<Chromosome> list) {
-        List<Chromosome> result = new ArrayList<>();
-        Chromosome chromosome1 = getRandomChromosomeFromList(list);
-        Chromosome chromosome2 = getRandomChromosomeFromList(list);
+    // Once the search is asked to stop, children are left as they are or only partly improved, so
+    // a memetic generation ends promptly.
+    private void improve(Chromosome child, ParallelEngine.Worker worker) {
+        if (termination != null && termination.stopRequested()) {
+            return;
+        }
+        if (localOptima != null && localOptima.get(child.getHash()) == child.getCurrentFitness()) {
+            return;
+        }
+        long start = startTimer();
+        worker.localSearch.improve(child, termination);
+        stopTimer(Metrics.Phase.LOCAL_SEARCH, start);
+        if (localOptima != null && worker.localSearch.reachedLocalOptimum()) {
+            localOptima.put(child.getHash(), child.getCurrentFitness());
+        }
+    }
 
-        result.add(chromosome1);
-        result.add(chromosome2);
-        return result;
+    void mutation(Chromosome chromosome, Chromosome child, int id, SplittableRandom random) {
+        long start = startTimer();
+        int size = chromosome.size();
+        int idx1 = random.nextInt(size);
+        int idx2 = random.nextInt(size - 1);
+        if (idx2 >= idx1) {
+            idx2++;
+        }
+
+        child.copyFrom(id, chromosome);
+        if (neighbors != null && random.nextDouble() < neighborBias) {
+            int neighbor = neighbors.neighbor(child.getTour()[idx1], random.nextInt(neighbors.getNumNeighbors()));
+            int neighborIdx = positionNear(child.getTour(), neighbor, idx1);
+            int nextIdx = (idx1 + 1) % size;
+            if (neighborIdx != nextIdx && neighborIdx != (idx1 + size - 1) % size) {
+                // Pull a close city in next to the one at idx1 instead of swapping blindly.
+                idx1 = nextIdx;
+                idx2 = neighborIdx;
+            }
+        }
+        child.swapAndUpdateFitness(idx1, idx2);
+        stopTimer(Metrics.Phase.MUTATE, start);
+        countEvaluations(1);
     }
 
-    private void saveCities() {
-        cities = new ArrayList<>();
+    void crossover(Chromosome chromosome1, Chromosome chromosome2, Chromosome child1, Chromosome child2, int id,
+                   ParallelEngine.Worker worker) {
+        long start = startTimer();
+        if (worker.crossover == null) {
+            worker.crossover = new OrderCrossover(neighbors, neighborBias);
+        }
+        worker.crossover.crossover(chromosome1.getTour(), chromosome2.getTour(), child1.getTour(), child2.getTour(),
+                worker.random);
+        assert checkForDuplicates(child1.getTour()) && checkForDuplicates(child2.getTour());
+        child1.setId(id);
+        child2.setId(id + 1);
+        start = stopTimer(Metrics.Phase.CROSSOVER, start);
+
+        child1.evaluate(fitnessCache);
+        child2.evaluate(fitnessCache);
+        stopTimer(Metrics.Phase.EVALUATE, start);
+        countEvaluations(2);
+    }
+
+    // Searches outwards from idx: a candidate neighbour sits a few positions away in any tour that
+    // is not close to random, so the search takes time by how far it is rather than by the size.
+    private static int positionNear(int[] tour, int city, int idx) {
+        int size = tour.length;
+        int after = idx;
+        int before = idx;
+        for (int offset = 1; offset <= size / 2; offset++) {
+            after = after == size - 1 ? 0 : after + 1;
+            before = before == 0 ? size - 1 : before - 1;
+            if (tour[after] == city) {
+                return after;
+            }
+            if (tour[before] == city) {
+                return before;
+            }
+        }
+        return -1;
+    }
 
-        coords.stream()
-                .map(string -> string.split(" "))
-                .map(stringList -> Arrays.stream(stringList)
-                        .filter(string -> string.length() > 0)
-                        .collect(Collectors.toList()))
-                .forEach(stringList -> cities.add(
-                        new City(stringList.get(0), stringList.get(1), stringList.get(2)))
-                );
+    private boolean checkForDuplicates(int[] childCities) {
+        boolean[] seen = new boolean[childCities.length];
+        for (int city : childCities) {
+            if (seen[city]) {
+                return false;
+            }
+            seen[city] = true;
+        }
+
+        return true;
+    }
+
+    private void saveCities() {
+        double[] x = instance.getX();
+        double[] y = instance.getY();
+        cities = new ArrayList<>(instance.getDimension());
+        IntStream.range(0, instance.getDimension()).forEach(idx -> cities.add(new City(idx + 1, x[idx], y[idx])));
     }
 
     private void readDataFromFile(String problemName) {
         String fileName = String.format("problems/%s.tsp", problemName);
         Path path = Paths.get(fileName);
 
-        try (Stream<String> lines = Files.lines(path)) {
-            lines.forEach(line -> {
-                if (line.startsWith("COMMENT")) {
-                    comment = line.substring(8);
-                }
-                if (line.startsWith("DIMENSION")) {
-                    dimension = Integer.parseInt(Arrays.stream(line.split(" ")).reduce((a, b) -> b).get());
-                }
-            });
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
-
-        try (Stream<String> lines = Files.lines(path)) {
-            List<String> coordsString = lines.collect(Collectors.toList());
-            coords = coordsString.subList(6, coordsString.size() - 1);
+        try {
+            instance = TspInstance.load(path);
         } catch (IOException e) {
-            e.printStackTrace();
+            throw new UncheckedIOException(String.format("Could not read problem %s", fileName), e);
         }
+        comment = instance.getComment();
+        dimension = instance.getDimension();
     }
 
     @Override
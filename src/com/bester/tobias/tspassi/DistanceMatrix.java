@@ -0,0 +1,118 @@
+package com.bester.tobias.tspassi;
+
+public class DistanceMatrix {
+
+    static final int MAX_FULL_MATRIX_CITIES = 4096;
+    static final int MAX_CACHED_CITIES = 65535;
+    private static final int CACHE_SLOTS = 1 << 22;
+
+    private final int size;
+    private final double[] x;
+    private final double[] y;
+
+    // Full row-major matrix for small instances, otherwise a direct-mapped cache of
+    // (pair index + 1) << 32 | distance entries that is filled on first lookup.
+    private final int[] matrix;
+    private final long[] cache;
+
+    // Full tour lengths without the matrix measure the edges from the coordinates instead, which
+    // beats a lookup that misses the cache on most edges.
+    private final TourKernel kernel;
+
+    DistanceMatrix(double[] x, double[] y) {
+        this.size = x.length;
+        this.x = x;
+        this.y = y;
+
+        if (size <= MAX_FULL_MATRIX_CITIES) {
+            matrix = new int[size * size];
+            cache = null;
+            kernel = null;
+            fillMatrix();
+        } else {
+            matrix = null;
+            cache = size <= MAX_CACHED_CITIES ? new long[CACHE_SLOTS] : null;
+            kernel = TourKernel.create(x, y);
+        }
+    }
+
+    int distance(int from, int to) {
+        if (matrix != null) {
+            return matrix[from * size + to];
+        }
+        if (cache == null) {
+            return computeDistance(from, to);
+        }
+        return cachedDistance(Math.min(from, to), Math.max(from, to));
+    }
+
+    int tourLength(int[] tour) {
+        if (kernel != null) {
+            return kernel.length(tour);
+        }
+        int length = matrix[tour[tour.length - 1] * size + tour[0]];
+        for (int idx = 0; idx < tour.length - 1; idx++) {
+            length += matrix[tour[idx] * size + tour[idx + 1]];
+        }
+        return length;
+    }
+
+    // Bytes held by the matrix or the cache and the coordinates.
+    long footprintBytes() {
+        long bytes = 16L * size;
+        if (matrix != null) {
+            bytes += 4L * matrix.length;
+        }
+        if (cache != null) {
+            bytes += 8L * cache.length;
+        }
+        return bytes;
+    }
+
+    double[] getX() {
+        return x;
+    }
+
+    double[] getY() {
+        return y;
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    private int cachedDistance(int low, int high) {
+        long key = (long) low * size + high + 1;
+        int slot = (int) (mix(key) & (CACHE_SLOTS - 1));
+
+        long entry = cache[slot];
+        if (entry >>> 32 == key) {
+            return (int) entry;
+        }
+
+        int distance = computeDistance(low, high);
+        cache[slot] = (key << 32) | distance;
+        return distance;
+    }
+
+    private void fillMatrix() {
+        for (int from = 0; from < size; from++) {
+            for (int to = from + 1; to < size; to++) {
+                int distance = computeDistance(from, to);
+                matrix[from * size + to] = distance;
+                matrix[to * size + from] = distance;
+            }
+        }
+    }
+
+    private int computeDistance(int from, int to) {
+        double xd = x[from] - x[to];
+        double yd = y[from] - y[to];
+        return Math.round((float) Math.sqrt((xd * xd) + (yd * yd)));
+    }
+
+    private static long mix(long key) {
+        key = (key ^ (key >>> 33)) * 0xff51afd7ed558ccdL;
+        return key ^ (key >>> 33);
+    }
+}
@@ -0,0 +1,314 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Edge assembly crossover (Nagata). The edges the parents do not share are split into AB-cycles
+// that alternate between an edge of A and an edge of B. A child is one parent with the edges of
+// one random AB-cycle swapped for the other parent's, which leaves a few subtours; these are
+// joined, smallest first, by the cheapest exchange of two edges found through the neighbour
+// lists. Tours are held as adjacency arrays: city c is linked to link[2c] and link[2c + 1].
+public class EdgeAssemblyCrossover implements CrossoverOperator {
+
+    private final DistanceMatrix distances;
+    private final NeighborLists neighbors;
+
+    private int[] linkA = new int[0];
+    private int[] linkB = new int[0];
+    private int[] link = new int[0];
+
+    // Edges of A and of B that the other parent does not have, two slots per city.
+    private int[] onlyA = new int[0];
+    private int[] onlyB = new int[0];
+    private int[] countA = new int[0];
+    private int[] countB = new int[0];
+
+    // The alternating walk, and where each city sits on it at an even or odd index.
+    private int[] path = new int[0];
+    private int[] pathIndex = new int[0];
+
+    // AB-cycle c is cycles[cycleStart[c], cycleStart[c + 1]); its even edges belong to A.
+    private int[] cycles = new int[0];
+    private int[] cycleStart = new int[0];
+    private int numCycles;
+
+    private int[] component = new int[0];
+    private int[] componentSize = new int[0];
+    private int[] componentCity = new int[0];
+    private int[] liveComponents = new int[0];
+
+    EdgeAssemblyCrossover(DistanceMatrix distances, NeighborLists neighbors) {
+        this.distances = distances;
+        this.neighbors = neighbors;
+    }
+
+    @Override
+    public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, SplittableRandom random) {
+        int size = parent1.length;
+        if (size < 5) {
+            System.arraycopy(parent1, 0, child1, 0, size);
+            System.arraycopy(parent2, 0, child2, 0, size);
+            return;
+        }
+        if (countA.length != size) {
+            allocate(size);
+        }
+
+        toLinks(parent1, linkA);
+        toLinks(parent2, linkB);
+        findCycles(random);
+        if (numCycles == 0) {
+            System.arraycopy(parent1, 0, child1, 0, size);
+            System.arraycopy(parent2, 0, child2, 0, size);
+            return;
+        }
+
+        assemble(linkA, random.nextInt(numCycles), true, parent1[0], child1);
+        assemble(linkB, random.nextInt(numCycles), false, parent2[0], child2);
+    }
+
+    private void allocate(int size) {
+        linkA = new int[2 * size];
+        linkB = new int[2 * size];
+        link = new int[2 * size];
+        onlyA = new int[2 * size];
+        onlyB = new int[2 * size];
+        countA = new int[size];
+        countB = new int[size];
+        path = new int[2 * size + 1];
+        pathIndex = new int[2 * size];
+        cycles = new int[2 * size];
+        cycleStart = new int[size + 1];
+        component = new int[size];
+        componentSize = new int[size];
+        componentCity = new int[size];
+        liveComponents = new int[size];
+    }
+
+    private static void toLinks(int[] tour, int[] links) {
+        int size = tour.length;
+        for (int idx = 0; idx < size; idx++) {
+            int city = tour[idx];
+            links[2 * city] = tour[idx == 0 ? size - 1 : idx - 1];
+            links[2 * city + 1] = tour[idx == size - 1 ? 0 : idx + 1];
+        }
+    }
+
+    // Every city has as many unshared A edges as unshared B edges, so a walk that alternates
+    // between them can always go on, and it closes an AB-cycle whenever it comes back to a city
+    // it reached at an index of the same parity. The cycle is cut off and the walk goes on from
+    // that city until the start has no A edge left.
+    private void findCycles(SplittableRandom random) {
+        int size = countA.length;
+        for (int city = 0; city < size; city++) {
+            countA[city] = 0;
+            countB[city] = 0;
+            for (int side = 0; side < 2; side++) {
+                int a = linkA[2 * city + side];
+                if (a != linkB[2 * city] && a != linkB[2 * city + 1]) {
+                    onlyA[2 * city + countA[city]++] = a;
+                }
+                int b = linkB[2 * city + side];
+                if (b != linkA[2 * city] && b != linkA[2 * city + 1]) {
+                    onlyB[2 * city + countB[city]++] = b;
+                }
+            }
+        }
+        Arrays.fill(pathIndex, -1);
+        numCycles = 0;
+        int filled = 0;
+
+        int offset = random.nextInt(size);
+        for (int step = 0; step < size; step++) {
+            int start = (offset + step) % size;
+            while (countA[start] > 0) {
+                int length = 1;
+                path[0] = start;
+                pathIndex[2 * start] = 0;
+
+                while (length > 1 || countA[start] > 0) {
+                    int current = path[length - 1];
+                    boolean edgeOfA = (length - 1) % 2 == 0;
+                    int[] only = edgeOfA ? onlyA : onlyB;
+                    int[] count = edgeOfA ? countA : countB;
+                    int next = only[2 * current + (count[current] == 1 ? 0 : random.nextInt(2))];
+                    removeEdge(only, count, current, next);
+                    removeEdge(only, count, next, current);
+
+                    int parity = length % 2;
+                    int closing = pathIndex[2 * next + parity];
+                    if (closing < 0) {
+                        pathIndex[2 * next + parity] = length;
+                        path[length++] = next;
+                        continue;
+                    }
+
+                    // path[closing, length) is the cycle; stored so that its first edge is of A.
+                    cycleStart[numCycles] = filled;
+                    for (int idx = closing + closing % 2; idx < length; idx++) {
+                        cycles[filled++] = path[idx];
+                    }
+                    if (closing % 2 == 1) {
+                        cycles[filled++] = path[closing];
+                    }
+                    numCycles++;
+                    for (int idx = closing + 1; idx < length; idx++) {
+                        pathIndex[2 * path[idx] + idx % 2] = -1;
+                    }
+                    length = closing + 1;
+                }
+                pathIndex[2 * start] = -1;
+            }
+        }
+        cycleStart[numCycles] = filled;
+    }
+
+    private static void removeEdge(int[] only, int[] count, int city, int neighbor) {
+        if (only[2 * city] == neighbor) {
+            only[2 * city] = only[2 * city + 1];
+        }
+        count[city]--;
+    }
+
+    // Swaps the cycle's edges of the base parent for those of the other parent, joins the
+    // subtours that leaves and writes the tour out starting at first.
+    private void assemble(int[] base, int cycle, boolean baseIsA, int first, int[] child) {
+        System.arraycopy(base, 0, link, 0, base.length);
+        int from = cycleStart[cycle];
+        int length = cycleStart[cycle + 1] - from;
+        int removedParity = baseIsA ? 0 : 1;
+
+        for (int idx = removedParity; idx < length; idx += 2) {
+            int city = cycles[from + idx];
+            int other = cycles[from + (idx + 1) % length];
+            replaceLink(city, other, -1);
+            replaceLink(other, city, -1);
+        }
+        for (int idx = 1 - removedParity; idx < length; idx += 2) {
+            int city = cycles[from + idx];
+            int other = cycles[from + (idx + 1) % length];
+            replaceLink(city, -1, other);
+            replaceLink(other, -1, city);
+        }
+
+        joinSubtours();
+
+        int previous = link[2 * first + 1];
+        int city = first;
+        for (int idx = 0; idx < child.length; idx++) {
+            child[idx] = city;
+            int next = link[2 * city] == previous ? link[2 * city + 1] : link[2 * city];
+            previous = city;
+            city = next;
+        }
+    }
+
+    private void replaceLink(int city, int from, int to) {
+        if (link[2 * city] == from) {
+            link[2 * city] = to;
+        } else {
+            link[2 * city + 1] = to;
+        }
+    }
+
+    private void joinSubtours() {
+        int size = component.length;
+        Arrays.fill(component, -1);
+        int numComponents = 0;
+        for (int city = 0; city < size; city++) {
+            if (component[city] < 0) {
+                componentCity[numComponents] = city;
+                componentSize[numComponents] = label(city, numComponents);
+                liveComponents[numComponents] = numComponents;
+                numComponents++;
+            }
+        }
+
+        while (numComponents > 1) {
+            int smallest = 0;
+            for (int idx = 1; idx < numComponents; idx++) {
+                if (componentSize[liveComponents[idx]] < componentSize[liveComponents[smallest]]) {
+                    smallest = idx;
+                }
+            }
+            int joined = liveComponents[smallest];
+            liveComponents[smallest] = liveComponents[--numComponents];
+            join(joined);
+        }
+    }
+
+    // Labels the subtour through city and returns its length.
+    private int label(int city, int label) {
+        int previous = link[2 * city + 1];
+        int current = city;
+        int length = 0;
+        do {
+            component[current] = label;
+            length++;
+            int next = link[2 * current] == previous ? link[2 * current + 1] : link[2 * current];
+            previous = current;
+            current = next;
+        } while (current != city);
+        return length;
+    }
+
+    // Replaces an edge (u, u2) of the subtour and an edge (v, v2) of another one by (u, v) and
+    // (u2, v2), or by (u, v2) and (u2, v), whichever is shortest. Candidates for v are u's nearest
+    // cities; only when all of them are in the same subtour are all cities tried.
+    private void join(int joined) {
+        int bestU = -1;
+        int bestU2 = -1;
+        int bestV = -1;
+        int bestV2 = -1;
+        int bestCost = Integer.MAX_VALUE;
+
+        for (int pass = 0; pass < 2 && bestU < 0; pass++) {
+            int start = componentCity[joined];
+            int previous = link[2 * start + 1];
+            int u = start;
+            do {
+                int candidates = pass == 0 ? neighbors.getNumNeighbors() : component.length;
+                for (int side = 0; side < 2; side++) {
+                    int u2 = link[2 * u + side];
+                    int removedU = distances.distance(u, u2);
+                    for (int rank = 0; rank < candidates; rank++) {
+                        int v = pass == 0 ? neighbors.neighbor(u, rank) : rank;
+                        if (component[v] == joined) {
+                            continue;
+                        }
+                        for (int otherSide = 0; otherSide < 2; otherSide++) {
+                            int v2 = link[2 * v + otherSide];
+                            int removed = removedU + distances.distance(v, v2);
+                            int straight = distances.distance(u, v) + distances.distance(u2, v2) - removed;
+                            int crossed = distances.distance(u, v2) + distances.distance(u2, v) - removed;
+                            if (straight < bestCost) {
+                                bestCost = straight;
+                                bestU = u;
+                                bestU2 = u2;
+                                bestV = v;
+                                bestV2 = v2;
+                            }
+                            if (crossed < bestCost) {
+                                bestCost = crossed;
+                                bestU = u;
+                                bestU2 = u2;
+                                bestV = v2;
+                                bestV2 = v;
+                            }
+                        }
+                    }
+                }
+                int next = link[2 * u] == previous ? link[2 * u + 1] : link[2 * u];
+                previous = u;
+                u = next;
+            } while (u != start && pass == 0);
+        }
+
+        int into = component[bestV];
+        componentSize[into] += label(componentCity[joined], into);
+        replaceLink(bestU, bestU2, bestV);
+        replaceLink(bestU2, bestU, bestV2);
+        replaceLink(bestV, bestV2, bestU);
+        replaceLink(bestV2, bestV, bestU2);
+    }
+}
@@ -0,0 +1,129 @@
+package com.bester.tobias.tspassi;
+
+// How many members of a population use each undirected edge, kept up to date as members are
+// replaced. A replacement only touches the edges the old and the new tour do not share, which in
+// a converging population are few.
+//
+// With F(e) members using edge e out of T = cities * members edges in all, the edge entropy is
+// H = -sum F(e) / T ln(F(e) / T). It lies between ln(cities), every member the same tour, and
+// ln(T), no edge used twice, and diversity() scales it to [0, 1]. Counts are kept in a histogram
+// as well, so the sum is exact however many replacements there were.
+public class EdgeEntropy {
+
+    private final int numCities;
+    private final int numMembers;
+    // Open addressing with linear probing; key (low city << 32 | high city), 0 for an empty slot.
+    private final long[] keys;
+    private final int[] counts;
+    private final int mask;
+    // edgesWithCount[c] is the number of edges used by exactly c members.
+    private final long[] edgesWithCount;
+
+    private final int[] oldNext;
+    private final int[] oldPrevious;
+    private final int[] next;
+    private final int[] previous;
+
+    EdgeEntropy(int numCities, int numMembers) {
+        this.numCities = numCities;
+        this.numMembers = numMembers;
+        int slots = Integer.highestOneBit(Math.max(2, 2 * numCities * numMembers - 1)) << 1;
+        keys = new long[slots];
+        counts = new int[slots];
+        mask = slots - 1;
+        edgesWithCount = new long[numMembers + 1];
+        oldNext = new int[numCities];
+        oldPrevious = new int[numCities];
+        next = new int[numCities];
+        previous = new int[numCities];
+    }
+
+    void add(int[] tour) {
+        for (int idx = 0; idx < tour.length; idx++) {
+            change(tour[idx], tour[idx + 1 == tour.length ? 0 : idx + 1], 1);
+        }
+    }
+
+    // The member with tour oldTour now has tour instead.
+    void replace(int[] oldTour, int[] tour) {
+        link(oldTour, oldNext, oldPrevious);
+        link(tour, next, previous);
+        for (int idx = 0; idx < numCities; idx++) {
+            int from = oldTour[idx];
+            int to = oldTour[idx + 1 == numCities ? 0 : idx + 1];
+            if (next[from] != to && previous[from] != to) {
+                change(from, to, -1);
+            }
+        }
+        for (int idx = 0; idx < numCities; idx++) {
+            int from = tour[idx];
+            int to = tour[idx + 1 == numCities ? 0 : idx + 1];
+            if (oldNext[from] != to && oldPrevious[from] != to) {
+                change(from, to, 1);
+            }
+        }
+    }
+
+    // 1 when no two members share an edge, 0 when all of them are the same tour.
+    double diversity() {
+        if (numMembers < 2) {
+            return 0;
+        }
+        double sum = 0;
+        for (int count = 2; count <= numMembers; count++) {
+            sum += edgesWithCount[count] * count * Math.log(count);
+        }
+        return 1 - sum / ((double) numCities * numMembers * Math.log(numMembers));
+    }
+
+    private static void link(int[] tour, int[] next, int[] previous) {
+        int last = tour[tour.length - 1];
+        for (int city : tour) {
+            next[last] = city;
+            previous[city] = last;
+            last = city;
+        }
+    }
+
+    private void change(int city1, int city2, int delta) {
+        long key = (long) Math.min(city1, city2) << 32 | Math.max(city1, city2);
+        int slot = slotOf(key);
+        while (keys[slot] != 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+
+        int count = counts[slot];
+        edgesWithCount[count]--;
+        count += delta;
+        edgesWithCount[count]++;
+        if (count > 0) {
+            keys[slot] = key;
+            counts[slot] = count;
+        } else {
+            remove(slot);
+        }
+    }
+
+    // Moves later keys of the same probe run back into the hole, so lookups never need tombstones.
+    private void remove(int hole) {
+        keys[hole] = 0;
+        counts[hole] = 0;
+        int slot = (hole + 1) & mask;
+        while (keys[slot] != 0) {
+            int home = slotOf(keys[slot]);
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                keys[hole] = keys[slot];
+                counts[hole] = counts[slot];
+                keys[slot] = 0;
+                counts[slot] = 0;
+                hole = slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private int slotOf(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+}
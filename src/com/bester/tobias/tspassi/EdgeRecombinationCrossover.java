@@ -0,0 +1,112 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+// Builds each child from the union of the parents' edges, so nearly every edge of a child comes
+// from one of its parents. City c's neighbours are edges[4c, 4c + degree[c]), with shared set
+// for edges both parents have.
+public class EdgeRecombinationCrossover implements CrossoverOperator {
+
+    private int[] edges = new int[0];
+    private boolean[] shared = new boolean[0];
+    private int[] degree = new int[0];
+    private int[] unvisited = new int[0];
+    private int[] unvisitedPosition = new int[0];
+
+    @Override
+    public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, SplittableRandom random) {
+        int size = parent1.length;
+        if (degree.length != size) {
+            edges = new int[4 * size];
+            shared = new boolean[4 * size];
+            degree = new int[size];
+            unvisited = new int[size];
+            unvisitedPosition = new int[size];
+        }
+
+        recombine(parent1, parent2, child1, random);
+        recombine(parent2, parent1, child2, random);
+    }
+
+    // Starts at the first city of the first parent and moves to a shared edge where there is one,
+    // otherwise to the neighbour with the fewest edges left, breaking ties at random. A city
+    // without edges left continues at a random unvisited city.
+    private void recombine(int[] first, int[] second, int[] child, SplittableRandom random) {
+        int size = child.length;
+        for (int city = 0; city < size; city++) {
+            degree[city] = 0;
+            unvisited[city] = city;
+            unvisitedPosition[city] = city;
+        }
+        addEdges(first);
+        addEdges(second);
+
+        int remaining = size;
+        int current = first[0];
+        for (int idx = 0; idx < size; idx++) {
+            child[idx] = current;
+            int last = unvisited[--remaining];
+            unvisited[unvisitedPosition[current]] = last;
+            unvisitedPosition[last] = unvisitedPosition[current];
+            for (int edge = 4 * current; edge < 4 * current + degree[current]; edge++) {
+                removeEdge(edges[edge], current);
+            }
+            if (remaining == 0) {
+                break;
+            }
+
+            int next = -1;
+            int fewest = Integer.MAX_VALUE;
+            int ties = 0;
+            for (int edge = 4 * current; edge < 4 * current + degree[current]; edge++) {
+                int candidate = edges[edge];
+                if (shared[edge]) {
+                    next = candidate;
+                    break;
+                }
+                if (degree[candidate] < fewest) {
+                    next = candidate;
+                    fewest = degree[candidate];
+                    ties = 1;
+                } else if (degree[candidate] == fewest && random.nextInt(++ties) == 0) {
+                    next = candidate;
+                }
+            }
+            current = next >= 0 ? next : unvisited[random.nextInt(remaining)];
+        }
+    }
+
+    private void addEdges(int[] parent) {
+        int size = parent.length;
+        for (int idx = 0; idx < size; idx++) {
+            int city = parent[idx];
+            addEdge(city, parent[idx == 0 ? size - 1 : idx - 1]);
+            addEdge(city, parent[idx == size - 1 ? 0 : idx + 1]);
+        }
+    }
+
+    private void addEdge(int city, int neighbor) {
+        int first = 4 * city;
+        for (int edge = first; edge < first + degree[city]; edge++) {
+            if (edges[edge] == neighbor) {
+                shared[edge] = true;
+                return;
+            }
+        }
+        edges[first + degree[city]] = neighbor;
+        shared[first + degree[city]] = false;
+        degree[city]++;
+    }
+
+    private void removeEdge(int city, int neighbor) {
+        int first = 4 * city;
+        for (int edge = first; edge < first + degree[city]; edge++) {
+            if (edges[edge] == neighbor) {
+                int last = first + --degree[city];
+                edges[edge] = edges[last];
+                shared[edge] = shared[last];
+                return;
+            }
+        }
+    }
+}
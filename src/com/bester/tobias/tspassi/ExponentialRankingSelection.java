@@ -0,0 +1,19 @@
+package com.bester.tobias.tspassi;
+
+public class ExponentialRankingSelection extends RankBasedSelection {
+
+    private final double base;
+
+    // Each rank is base times as likely as the one before it, with base in (0, 1).
+    ExponentialRankingSelection(double base) {
+        if (base <= 0 || base >= 1) {
+            throw new IllegalArgumentException("Exponential ranking base must be in (0, 1) but was " + base);
+        }
+        this.base = base;
+    }
+
+    @Override
+    double weight(int rank, int size) {
+        return Math.pow(base, rank);
+    }
+}
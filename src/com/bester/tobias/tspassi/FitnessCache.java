@@ -0,0 +1,107 @@
+package com.bester.tobias.tspassi;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class FitnessCache {
+
+    static final int MISS = -1;
+    private static final int WAYS = 8;
+    private static final int STRIPES = 64;
+
+    // Set s holds ways [s * WAYS, (s + 1) * WAYS) ordered from most to least recently used, and
+    // a key of 0 marks an empty way. Sets are guarded by one of a fixed number of lock stripes.
+    private final long[] keys;
+    private final int[] values;
+    private final int setMask;
+    private final Object[] locks = new Object[STRIPES];
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    // Capacity is rounded up to a power of two number of sets.
+    FitnessCache(int capacity) {
+        int sets = Integer.highestOneBit(Math.max(1, (capacity + WAYS - 1) / WAYS - 1)) << 1;
+        this.keys = new long[sets * WAYS];
+        this.values = new int[sets * WAYS];
+        this.setMask = sets - 1;
+        for (int idx = 0; idx < STRIPES; idx++) {
+            locks[idx] = new Object();
+        }
+    }
+
+    // Returns the cached fitness for the hash or MISS. A hit becomes the most recently used way.
+    int get(long hash) {
+        long key = hash == 0 ? 1 : hash;
+        int set = setOf(key);
+        int first = set * WAYS;
+
+        synchronized (locks[set & (STRIPES - 1)]) {
+            for (int way = first; way < first + WAYS; way++) {
+                if (keys[way] == key) {
+                    int value = values[way];
+                    moveToFront(first, way, key, value);
+                    hits.increment();
+                    return value;
+                }
+                if (keys[way] == 0) {
+                    break;
+                }
+            }
+        }
+
+        misses.increment();
+        return MISS;
+    }
+
+    void put(long hash, int fitness) {
+        long key = hash == 0 ? 1 : hash;
+        int set = setOf(key);
+        int first = set * WAYS;
+
+        synchronized (locks[set & (STRIPES - 1)]) {
+            int way = first;
+            while (way < first + WAYS - 1 && keys[way] != key && keys[way] != 0) {
+                way++;
+            }
+            if (keys[way] != key && keys[way] != 0) {
+                evictions.increment();
+            }
+            moveToFront(first, way, key, fitness);
+        }
+    }
+
+    private void moveToFront(int first, int way, long key, int value) {
+        System.arraycopy(keys, first, keys, first + 1, way - first);
+        System.arraycopy(values, first, values, first + 1, way - first);
+        keys[first] = key;
+        values[first] = value;
+    }
+
+    private int setOf(long key) {
+        return (int) (key ^ (key >>> 32)) & setMask;
+    }
+
+    long getHits() {
+        return hits.sum();
+    }
+
+    long getMisses() {
+        return misses.sum();
+    }
+
+    long getEvictions() {
+        return evictions.sum();
+    }
+
+    double getHitRate() {
+        long lookups = getHits() + getMisses();
+        return lookups == 0 ? 0 : getHits() / (double) lookups;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("FitnessCache{entries=%d, hits=%d, misses=%d, evictions=%d, hitRate=%.3f}",
+                keys.length, getHits(), getMisses(), getEvictions(), getHitRate());
+    }
+}
@@ -0,0 +1,43 @@
+package com.bester.tobias.tspassi;
+
+import javafx.scene.Scene;
+import javafx.scene.chart.LineChart;
+import javafx.scene.chart.NumberAxis;
+import javafx.scene.chart.XYChart;
+import javafx.scene.chart.XYChart.Data;
+import javafx.stage.Stage;
+
+import java.util.stream.IntStream;
+
+// The only place besides TSPAssi that needs JavaFX, so the populations and the batch runner can
+// run without it on the classpath.
+public class FitnessGraph {
+
+    private static final int MAX_POINTS = 800;
+
+    // Plots at most MAX_POINTS downsampled points, however long the run was.
+    static void show(FitnessHistory history, String label) {
+        Stage stage = new Stage();
+        stage.setTitle("Fitness over time");
+        NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Iterations");
+        NumberAxis yAxis = new NumberAxis();
+        yAxis.setLabel(label);
+
+        LineChart<Number, Number> lineChart = new LineChart<>(xAxis, yAxis);
+        lineChart.setCreateSymbols(false);
+
+        XYChart.Series series = new XYChart.Series();
+        series.setName("Fitness over time");
+
+        double[][] points = history.downsample(MAX_POINTS);
+        IntStream.range(0, points[0].length).forEach(idx ->
+                series.getData().add(new Data(points[0][idx], points[1][idx])));
+
+        Scene scene = new Scene(lineChart, 800, 600);
+        lineChart.getData().add(series);
+
+        stage.setScene(scene);
+        stage.show();
+    }
+}
@@ -0,0 +1,109 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+
+// Indexed binary heap of population slots keyed by fitness, with the longest tour on top. A slot
+// can be re-keyed in place after its member is replaced, so the worst member is always at hand
+// in O(log n) without allocating.
+public class FitnessHeap {
+
+    private final int[] heap;
+    private final int[] position;
+    private final int[] fitness;
+    private int size;
+
+    FitnessHeap(int capacity) {
+        heap = new int[capacity];
+        position = new int[capacity];
+        fitness = new int[capacity];
+        Arrays.fill(position, -1);
+    }
+
+    void clear() {
+        for (int idx = 0; idx < size; idx++) {
+            position[heap[idx]] = -1;
+        }
+        size = 0;
+    }
+
+    void add(int slot, int slotFitness) {
+        fitness[slot] = slotFitness;
+        heap[size] = slot;
+        position[slot] = size;
+        siftUp(size++);
+    }
+
+    void update(int slot, int slotFitness) {
+        int previous = fitness[slot];
+        fitness[slot] = slotFitness;
+        if (slotFitness > previous) {
+            siftUp(position[slot]);
+        } else {
+            siftDown(position[slot]);
+        }
+    }
+
+    int peek() {
+        return heap[0];
+    }
+
+    int peekFitness() {
+        return fitness[heap[0]];
+    }
+
+    int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int capacity() {
+        return heap.length;
+    }
+
+    private void siftUp(int idx) {
+        int slot = heap[idx];
+        while (idx > 0) {
+            int parent = (idx - 1) >>> 1;
+            if (fitness[heap[parent]] >= fitness[slot]) {
+                break;
+            }
+            heap[idx] = heap[parent];
+            position[heap[idx]] = idx;
+            idx = parent;
+        }
+        heap[idx] = slot;
+        position[slot] = idx;
+    }
+
+    private void siftDown(int idx) {
+        int slot = heap[idx];
+        while (true) {
+            int child = 2 * idx + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && fitness[heap[child + 1]] > fitness[heap[child]]) {
+                child++;
+            }
+            if (fitness[heap[child]] <= fitness[slot]) {
+                break;
+            }
+            heap[idx] = heap[child];
+            position[heap[idx]] = idx;
+            idx = child;
+        }
+        heap[idx] = slot;
+        position[slot] = idx;
+    }
+}
@@ -0,0 +1,262 @@
+package com.bester.tobias.tspassi;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// Per-generation values in a fixed amount of memory. Consecutive generations are summarised in
+// buckets of stride generations (min and max with the generations they came from, and mean);
+// when all buckets are used, neighbouring pairs are merged and the stride doubles. Exact totals
+// (count, min, max, last) are kept aside.
+public class FitnessHistory {
+
+    static final int DEFAULT_CAPACITY = 4096;
+
+    private final double[] mins;
+    private final double[] maxes;
+    private final double[] sums;
+    private final long[] minGenerations;
+    private final long[] maxGenerations;
+    private int points;
+    private long stride = 1;
+
+    private int pendingCount;
+    private double pendingMin;
+    private double pendingMax;
+    private double pendingSum;
+    private long pendingMinGeneration;
+    private long pendingMaxGeneration;
+
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+    private double last = Double.NaN;
+
+    FitnessHistory() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    FitnessHistory(int capacity) {
+        int even = Math.max(4, capacity & ~1);
+        mins = new double[even];
+        maxes = new double[even];
+        sums = new double[even];
+        minGenerations = new long[even];
+        maxGenerations = new long[even];
+    }
+
+    void add(double value) {
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        last = value;
+
+        if (pendingCount == 0 || value < pendingMin) {
+            pendingMin = value;
+            pendingMinGeneration = count;
+        }
+        if (pendingCount == 0 || value > pendingMax) {
+            pendingMax = value;
+            pendingMaxGeneration = count;
+        }
+        pendingSum = pendingCount == 0 ? value : pendingSum + value;
+        pendingCount++;
+
+        if (pendingCount == stride) {
+            mins[points] = pendingMin;
+            maxes[points] = pendingMax;
+            sums[points] = pendingSum;
+            minGenerations[points] = pendingMinGeneration;
+            maxGenerations[points] = pendingMaxGeneration;
+            points++;
+            pendingCount = 0;
+            if (points == mins.length) {
+                compact();
+            }
+        }
+    }
+
+    // Halves the number of buckets once they are all full, so the next bucket starts at the new
+    // stride on a boundary that is aligned with the merged ones.
+    private void compact() {
+        for (int idx = 0; idx < points / 2; idx++) {
+            int minFrom = mins[2 * idx + 1] < mins[2 * idx] ? 2 * idx + 1 : 2 * idx;
+            int maxFrom = maxes[2 * idx + 1] > maxes[2 * idx] ? 2 * idx + 1 : 2 * idx;
+            mins[idx] = mins[minFrom];
+            minGenerations[idx] = minGenerations[minFrom];
+            maxes[idx] = maxes[maxFrom];
+            maxGenerations[idx] = maxGenerations[maxFrom];
+            sums[idx] = sums[2 * idx] + sums[2 * idx + 1];
+        }
+        points /= 2;
+        stride *= 2;
+    }
+
+    long size() {
+        return count;
+    }
+
+    double getMin() {
+        return min;
+    }
+
+    double getMax() {
+        return max;
+    }
+
+    double getLast() {
+        return last;
+    }
+
+    // Bucket count including the partly filled one, if any.
+    int getNumPoints() {
+        return points + (pendingCount > 0 ? 1 : 0);
+    }
+
+    // First generation, counting from 1, summarised by the given bucket.
+    long generationAt(int point) {
+        return point * stride + 1;
+    }
+
+    double minAt(int point) {
+        return point < points ? mins[point] : pendingMin;
+    }
+
+    double maxAt(int point) {
+        return point < points ? maxes[point] : pendingMax;
+    }
+
+    double meanAt(int point) {
+        return point < points ? sums[point] / stride : pendingSum / pendingCount;
+    }
+
+    long minGenerationAt(int point) {
+        return point < points ? minGenerations[point] : pendingMinGeneration;
+    }
+
+    long maxGenerationAt(int point) {
+        return point < points ? maxGenerations[point] : pendingMaxGeneration;
+    }
+
+    // MinMaxLTTB: every bucket's min and max, at the generations they came from, are the
+    // candidates, and Largest-Triangle-Three-Buckets picks among them. LTTB keeps the first and
+    // last candidate and from every other slice the one that spans the largest triangle with its
+    // neighbours, so spikes that a bucket mean would flatten survive with at most threshold points.
+    // Returns {generations, values}.
+    double[][] downsample(int threshold) {
+        double[][] candidates = extremes();
+        int size = candidates[0].length;
+        if (threshold >= size || threshold < 3) {
+            return candidates;
+        }
+        double[] xs = candidates[0];
+        double[] ys = candidates[1];
+
+        double[][] sampled = new double[2][threshold];
+        double sliceSize = (double) (size - 2) / (threshold - 2);
+        int selected = 0;
+        sampled[0][0] = xs[0];
+        sampled[1][0] = ys[0];
+
+        for (int slice = 0; slice < threshold - 2; slice++) {
+            int nextStart = Math.min((int) ((slice + 1) * sliceSize) + 1, size - 1);
+            int nextEnd = Math.max(Math.min((int) ((slice + 2) * sliceSize) + 1, size), nextStart + 1);
+            double averageX = 0;
+            double averageY = 0;
+            for (int point = nextStart; point < nextEnd; point++) {
+                averageX += xs[point];
+                averageY += ys[point];
+            }
+            averageX /= nextEnd - nextStart;
+            averageY /= nextEnd - nextStart;
+
+            int start = (int) (slice * sliceSize) + 1;
+            int end = (int) ((slice + 1) * sliceSize) + 1;
+            double selectedX = xs[selected];
+            double selectedY = ys[selected];
+            double largestArea = -1;
+            int next = start;
+            for (int point = start; point < end; point++) {
+                double area = Math.abs((selectedX - averageX) * (ys[point] - selectedY)
+                        - (selectedX - xs[point]) * (averageY - selectedY));
+                if (area > largestArea) {
+                    largestArea = area;
+                    next = point;
+                }
+            }
+
+            sampled[0][slice + 1] = xs[next];
+            sampled[1][slice + 1] = ys[next];
+            selected = next;
+        }
+
+        sampled[0][threshold - 1] = xs[size - 1];
+        sampled[1][threshold - 1] = ys[size - 1];
+        return sampled;
+    }
+
+    // Each bucket's min and max in the order they happened, once when they are the same generation.
+    private double[][] extremes() {
+        int numPoints = getNumPoints();
+        double[] xs = new double[2 * numPoints];
+        double[] ys = new double[2 * numPoints];
+        int size = 0;
+        for (int point = 0; point < numPoints; point++) {
+            long minGeneration = minGenerationAt(point);
+            long maxGeneration = maxGenerationAt(point);
+            boolean minFirst = minGeneration <= maxGeneration;
+            xs[size] = minFirst ? minGeneration : maxGeneration;
+            ys[size++] = minFirst ? minAt(point) : maxAt(point);
+            if (minGeneration != maxGeneration) {
+                xs[size] = minFirst ? maxGeneration : minGeneration;
+                ys[size++] = minFirst ? maxAt(point) : minAt(point);
+            }
+        }
+        return new double[][] {Arrays.copyOf(xs, size), Arrays.copyOf(ys, size)};
+    }
+
+    int snapshotBytes() {
+        return 4 + 4 + 8 + 4 + 5 * 8 + 8 + 3 * 8 + points * 5 * 8;
+    }
+
+    void writeTo(ByteBuffer buffer) {
+        buffer.putInt(mins.length).putInt(points).putLong(stride);
+        buffer.putInt(pendingCount).putDouble(pendingMin).putDouble(pendingMax).putDouble(pendingSum);
+        buffer.putLong(pendingMinGeneration).putLong(pendingMaxGeneration);
+        buffer.putLong(count).putDouble(min).putDouble(max).putDouble(last);
+        for (int point = 0; point < points; point++) {
+            buffer.putDouble(mins[point]).putDouble(maxes[point]).putDouble(sums[point]);
+            buffer.putLong(minGenerations[point]).putLong(maxGenerations[point]);
+        }
+    }
+
+    static FitnessHistory readFrom(ByteBuffer buffer) {
+        FitnessHistory history = new FitnessHistory(buffer.getInt());
+        history.points = buffer.getInt();
+        history.stride = buffer.getLong();
+        history.pendingCount = buffer.getInt();
+        history.pendingMin = buffer.getDouble();
+        history.pendingMax = buffer.getDouble();
+        history.pendingSum = buffer.getDouble();
+        history.pendingMinGeneration = buffer.getLong();
+        history.pendingMaxGeneration = buffer.getLong();
+        history.count = buffer.getLong();
+        history.min = buffer.getDouble();
+        history.max = buffer.getDouble();
+        history.last = buffer.getDouble();
+        for (int point = 0; point < history.points; point++) {
+            history.mins[point] = buffer.getDouble();
+            history.maxes[point] = buffer.getDouble();
+            history.sums[point] = buffer.getDouble();
+            history.minGenerations[point] = buffer.getLong();
+            history.maxGenerations[point] = buffer.getLong();
+        }
+        return history;
+    }
+
+    @Override
+    public String toString() {
+        double[] values = downsample(20)[1];
+        return String.format("%d generations, min %.1f, max %.1f, last %.1f, trend %s", count, min, max, last,
+                Arrays.toString(Arrays.stream(values).mapToLong(Math::round).toArray()));
+    }
+}
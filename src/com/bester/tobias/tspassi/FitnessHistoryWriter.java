@@ -0,0 +1,91 @@
+package com.bester.tobias.tspassi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Full-resolution export of every generation as "generation,best,average" rows, appended as the
+// search runs so nothing has to be held in memory.
+public class FitnessHistoryWriter implements AutoCloseable {
+
+    private final Path file;
+    private final BufferedWriter writer;
+
+    FitnessHistoryWriter(Path file) throws IOException {
+        this(file, -1);
+    }
+
+    // Continues the history of a run resumed at generation resumedAt. Rows after it, and a row
+    // cut short by a crash, are dropped, since the resumed run writes them again; a missing or
+    // empty file is started with a header as usual.
+    FitnessHistoryWriter(Path file, long resumedAt) throws IOException {
+        this.file = file;
+        long kept = resumedAt >= 0 && Files.exists(file) ? endOfRows(file, resumedAt) : 0;
+        if (kept > 0) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(kept);
+            }
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        } else {
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            writer.write("generation,best,average");
+            writer.newLine();
+        }
+    }
+
+    // Bytes taken by the header and the complete rows up to generation.
+    private static long endOfRows(Path file, long generation) throws IOException {
+        long kept = 0;
+        long offset = 0;
+        boolean header = true;
+        boolean inGeneration = true;
+        long rowGeneration = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            for (int next = in.read(); next >= 0; next = in.read()) {
+                offset++;
+                if (next == '\n') {
+                    if (!header && rowGeneration > generation) {
+                        break;
+                    }
+                    kept = offset;
+                    header = false;
+                    inGeneration = true;
+                    rowGeneration = 0;
+                } else if (!header && inGeneration) {
+                    if (next >= '0' && next <= '9') {
+                        rowGeneration = rowGeneration * 10 + next - '0';
+                    } else {
+                        inGeneration = false;
+                    }
+                }
+            }
+        }
+        return kept;
+    }
+
+    void append(long generation, int best, double average) {
+        try {
+            writer.write(String.format(Locale.ROOT, "%d,%d,%.3f", generation, best, average));
+            writer.newLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not write to %s", file), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not close %s", file), e);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.bester.tobias.tspassi;
+
+// Log-bucketed histogram of non-negative longs in the style of HdrHistogram: values below 16 get a
+// bucket each, and every power of two above that is split into 8 sub-buckets, so any percentile
+// is within 12.5% of the recorded value. Recording allocates nothing and is not synchronized: each
+// thread records into a histogram of its own, and readers merge them with add.
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int BUCKETS = LINEAR_BUCKETS + (63 - 4) * (1 << SUB_BUCKET_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count;
+    private long sum;
+    private long max;
+
+    void record(long value) {
+        value = Math.max(0, value);
+        counts[bucketOf(value)]++;
+        count++;
+        sum += value;
+        max = Math.max(max, value);
+    }
+
+    // Read while its owner may still be recording, so a merge can be a value or two behind.
+    void add(Histogram other) {
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts[bucket] += other.counts[bucket];
+        }
+        count += other.count;
+        sum += other.sum;
+        max = Math.max(max, other.max);
+    }
+
+    long getCount() {
+        return count;
+    }
+
+    long getSum() {
+        return sum;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        long n = getCount();
+        return n == 0 ? 0 : getSum() / (double) n;
+    }
+
+    // Upper bound of the bucket holding the given quantile (0 to 1) of the recorded values.
+    long getPercentile(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(bucket), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + subBucket;
+    }
+
+    private static long upperBoundOf(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int exponent = ((bucket - LINEAR_BUCKETS) >>> SUB_BUCKET_BITS) + 4;
+        long subBucket = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+        return ((1L << SUB_BUCKET_BITS | subBucket) + 1 << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+}
@@ -1,62 +1,136 @@
 package com.bester.tobias.tspassi;
 
 import java.util.*;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class IndirectChromosome {
 
+    private static final ThreadLocal<int[]> DECODED_TOUR = ThreadLocal.withInitial(() -> new int[0]);
+
     private int numGenes;
-    private Integer currentFitness;
+    private int currentFitness;
+    private boolean dirty;
+
+    // XOR of geneHash over the words, so flipping one gene updates it in O(1).
+    private long hash;
 
-    private List<Boolean> genes;
+    // Gene i is bit i % 64 of word i / 64; bits past numGenes in the last word are always clear.
+    private long[] genes;
 
-    IndirectChromosome(int numGenes, Chromosome operand) {
+    // New genomes start dirty and get their fitness in the population's next evaluation pass.
+    IndirectChromosome(int numGenes, SplittableRandom random) {
         this.numGenes = numGenes;
-        generateGenes();
-        evaluate(new Chromosome(operand));
+        this.dirty = true;
+        generateGenes(random);
+        this.hash = hashOf(genes);
     }
 
-    IndirectChromosome(List<Boolean> genes, Chromosome operand) {
+    IndirectChromosome(long[] genes, int numGenes) {
         this.genes = genes;
-        this.numGenes = genes.size();
-        evaluate(new Chromosome(operand));
+        this.numGenes = numGenes;
+        this.dirty = true;
+        this.hash = hashOf(genes);
     }
 
     IndirectChromosome(IndirectChromosome copy) {
-        this.genes = new ArrayList<>(copy.getGenes());
+        this.genes = copy.getGenes().clone();
         this.numGenes = copy.numGenes;
-        this.currentFitness = copy.getCurrentFitness();
+        this.currentFitness = copy.currentFitness;
+        this.dirty = copy.dirty;
+        this.hash = copy.hash;
     }
 
-    public Integer evaluate(Chromosome operand) {
-        IntStream.range(0, numGenes)
-                .forEach(idx -> {
-                    int cityToSwap = idx * 2 + 1;
-                    if (genes.get(idx)) {
-                        Collections.swap(operand.getCities(), cityToSwap, cityToSwap - 1);
-                    }
-                });
+    // The fitness only depends on the genes and the operand, so a cache must not be shared between
+    // populations with different operands.
+    int evaluate(Chromosome operand, FitnessCache cache) {
+        if (cache == null) {
+            return evaluate(operand);
+        }
 
-        int result = operand.evaluate();
-        currentFitness = result;
-        return result;
+        int fitness = cache.get(hash);
+        if (fitness == FitnessCache.MISS) {
+            cache.put(hash, evaluate(operand));
+            return currentFitness;
+        }
+        currentFitness = fitness;
+        dirty = false;
+        return currentFitness;
+    }
+
+    // Decodes into this thread's scratch tour, so the operand itself is never modified and can be
+    // shared by every thread evaluating against it.
+    public int evaluate(Chromosome operand) {
+        int[] tour = DECODED_TOUR.get();
+        if (tour.length != operand.size()) {
+            tour = new int[operand.size()];
+            DECODED_TOUR.set(tour);
+        }
+
+        currentFitness = operand.lengthOf(decodeInto(operand, tour));
+        dirty = false;
+        return currentFitness;
+    }
+
+    // The tour this genome stands for: the operand with every pair whose gene is set swapped.
+    int[] decodeInto(Chromosome operand, int[] tour) {
+        System.arraycopy(operand.getTour(), 0, tour, 0, tour.length);
+
+        for (int word = 0; word < genes.length; word++) {
+            long bits = genes[word];
+            while (bits != 0) {
+                int cityToSwap = ((word << 6) + Long.numberOfTrailingZeros(bits)) * 2 + 1;
+                int city = tour[cityToSwap];
+                tour[cityToSwap] = tour[cityToSwap - 1];
+                tour[cityToSwap - 1] = city;
+                bits &= bits - 1;
+            }
+        }
+        return tour;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    // Genes [idx1, idx2] come from inside and the rest from outside, one masked word at a time.
+    static long[] twoPointCrossover(long[] inside, long[] outside, int idx1, int idx2) {
+        long[] child = new long[inside.length];
+        int firstWord = idx1 >>> 6;
+        int lastWord = idx2 >>> 6;
+
+        for (int word = 0; word < child.length; word++) {
+            long mask = 0;
+            if (word >= firstWord && word <= lastWord) {
+                mask = -1L;
+                if (word == firstWord) {
+                    mask &= -1L << idx1;
+                }
+                if (word == lastWord) {
+                    mask &= -1L >>> (63 - (idx2 & 63));
+                }
+            }
+            child[word] = (inside[word] & mask) | (outside[word] & ~mask);
+        }
+
+        return child;
     }
 
-    public List<Boolean> getGenes() {
+    public long[] getGenes() {
         return genes;
     }
 
-    public int getRandomIndex() {
-        return new Random().nextInt(numGenes);
+    int getNumGenes() {
+        return numGenes;
+    }
+
+    public int getRandomIndex(SplittableRandom random) {
+        return random.nextInt(numGenes);
     }
 
-    int[] getTwoRandomIndexes() {
-        Random r = new Random();
-        int idx1 = getRandomIndex();
-        int idx2 = r.nextInt(genes.size());
+    int[] getTwoRandomIndexes(SplittableRandom random) {
+        int idx1 = getRandomIndex(random);
+        int idx2 = random.nextInt(numGenes);
         while (idx1 == idx2) {
-            idx2 = r.nextInt(genes.size());
+            idx2 = random.nextInt(numGenes);
         }
 
         int[] result = new int[]{idx1, idx2};
@@ -66,7 +140,30 @@ public class IndirectChromosome {
     }
 
     public void switchGeneAtIndex(int index) {
-        genes.set(index, !genes.get(index));
+        int word = index >>> 6;
+        hash ^= wordHash(word, genes[word]);
+        genes[word] ^= 1L << index;
+        hash ^= wordHash(word, genes[word]);
+        dirty = true;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    static long hashOf(long[] genes) {
+        long hash = 0;
+        for (int word = 0; word < genes.length; word++) {
+            hash ^= wordHash(word, genes[word]);
+        }
+        return hash;
+    }
+
+    private static long wordHash(int word, long bits) {
+        long key = bits ^ (word + 1) * 0x9e3779b97f4a7c15L;
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
     }
 
     @Override
@@ -74,14 +171,18 @@ public class IndirectChromosome {
         return "IndirectChromosome{ currentFitness=" + currentFitness + " }";
     }
 
-    Integer getCurrentFitness() {
+    int getCurrentFitness() {
+        assert !dirty : "Fitness read before the chromosome was evaluated";
         return currentFitness;
     }
 
-    private void generateGenes() {
-        Random rand = new Random();
-        genes = IntStream.range(0, numGenes)
-                .mapToObj(idx -> rand.nextBoolean())
-                .collect(Collectors.toList());
+    private void generateGenes(SplittableRandom random) {
+        genes = new long[(numGenes + 63) >>> 6];
+        for (int word = 0; word < genes.length; word++) {
+            genes[word] = random.nextLong();
+        }
+        if ((numGenes & 63) != 0) {
+            genes[genes.length - 1] &= -1L >>> (64 - (numGenes & 63));
+        }
     }
 }
@@ -1,5 +1,6 @@
 package com.bester.tobias.tspassi;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
@@ -18,153 +19,268 @@ public class IndirectPopulation extends DirectPopulation {
     private List<IndirectChromosome> indirectChromosomes = new ArrayList<>();
 
     public IndirectPopulation(String problemName, int numChromosomes, int numIterations) {
-        super(problemName, numChromosomes, numIterations);
-        directChromosome = new Chromosome(0, cities, true);
+        this(problemName, numChromosomes, numIterations, System.nanoTime(), Runtime.getRuntime().availableProcessors());
+    }
+
+    public IndirectPopulation(String problemName, int numChromosomes, int numIterations, long seed, int numThreads) {
+        super(problemName, numChromosomes, numIterations, seed, numThreads);
+        directChromosome = new Chromosome(0, cities.size(), distances, engine.getWorker(0).random);
+        numGenes = cities.size() / 2;
+    }
+
+    public IndirectPopulation(DirectPopulation problem, int numChromosomes, int numIterations, long seed, int numThreads) {
+        super(problem, numChromosomes, numIterations, seed, numThreads);
+        directChromosome = new Chromosome(0, cities.size(), distances, engine.getWorker(0).random);
         numGenes = cities.size() / 2;
     }
 
     @Override
     public void createInitialPopulation() {
-        IntStream.range(0, numChromosomes).forEach(idx ->
-            indirectChromosomes.add(new IndirectChromosome(numGenes, directChromosome))
-        );
+        IndirectChromosome[] initial = new IndirectChromosome[numChromosomes];
+        engine.run(numChromosomes, (worker, from, to) -> IntStream.range(from, to).forEach(idx ->
+                initial[idx] = new IndirectChromosome(numGenes, worker.random)));
+        indirectChromosomes = new ArrayList<>(Arrays.asList(initial));
+        evaluatePopulation();
     }
 
     @Override
-    public void startSearch(int tournamentSize, double mutationProbability) {
-        System.out.println("Starting search");
-        IntStream.range(0, numIterations).forEach(idx -> {
-            System.out.format("Starting iteration %d%n", idx);
-            evaluatePopulation();
-
-            List<IndirectChromosome> parents = selectParents(tournamentSize);
+    void nextGeneration(int tournamentSize, double mutationProbability) {
+        engine.reseed(getGeneration());
+        if (getGenerationModel() == GenerationModel.STEADY_STATE) {
+            steadyStateGeneration(tournamentSize, mutationProbability);
+            recordGeneration();
+            return;
+        }
 
-            indirectChromosomes = new ArrayList<>(applyOperators(parents, mutationProbability));
+        List<IndirectChromosome> elites = getGenerationModel() == GenerationModel.ELITIST ? copyElites() : null;
+        long start = startTimer();
+        List<IndirectChromosome> parents = selectParents(tournamentSize);
+        stopTimer(Metrics.Phase.SELECT, start);
+
+        indirectChromosomes = new ArrayList<>(applyOperators(parents, mutationProbability));
+        evaluatePopulation();
+        if (elites != null) {
+            int[] worst = worstSlots(idx -> indirectChromosomes.get(idx).getCurrentFitness(),
+                    indirectChromosomes.size(), elites.size());
+            for (int idx = 0; idx < elites.size(); idx++) {
+                if (elites.get(idx).getCurrentFitness() < indirectChromosomes.get(worst[idx]).getCurrentFitness()) {
+                    indirectChromosomes.set(worst[idx], elites.get(idx));
+                }
+            }
+        }
 
-            averageFitnessHistory.add(calculateAverageFitness());
-            bestFitnessHistory.add(calculateBestFitness());
-        });
+        recordGeneration();
     }
 
-    @Override
-    protected Integer calculateBestFitness() {
-        Optional<Integer> lowest = indirectChromosomes.stream()
-                .map(IndirectChromosome::getCurrentFitness)
-                .min(Integer::compareTo);
+    // Genomes are never changed once evaluated, so the elites can be carried over as they are.
+    private List<IndirectChromosome> copyElites() {
+        int[] best = bestSlots(idx -> indirectChromosomes.get(idx).getCurrentFitness(), indirectChromosomes.size(),
+                getNumElites());
+        List<IndirectChromosome> elites = new ArrayList<>(best.length);
+        for (int slot : best) {
+            elites.add(indirectChromosomes.get(slot));
+        }
+        return elites;
+    }
 
-        return lowest.orElse(9999);
+    private void steadyStateGeneration(int tournamentSize, double mutationProb) {
+        ParallelEngine.Worker worker = engine.getWorker(0);
+        int size = indirectChromosomes.size();
+        prepareSteadyState(idx -> indirectChromosomes.get(idx).getCurrentFitness(),
+                idx -> indirectChromosomes.get(idx).getHash(), size, tournamentSize);
+
+        int produced = 0;
+        while (produced < size) {
+            long start = startTimer();
+            IndirectChromosome parent1 = indirectChromosomes.get(selectParent(worker.random));
+            IndirectChromosome parent2 = indirectChromosomes.get(selectParent(worker.random));
+            stopTimer(Metrics.Phase.SELECT, start);
+
+            if (produced + 1 < size && worker.random.nextFloat() > mutationProb) {
+                List<IndirectChromosome> children = crossover(parent1, parent2, worker.random);
+                insertChild(children.get(0));
+                insertChild(children.get(1));
+                produced += 2;
+            } else {
+                insertChild(mutation(parent1, worker.random));
+                produced++;
+            }
+        }
     }
 
-    @Override
-    protected float calculateAverageFitness() {
-        Optional<Integer> sum = indirectChromosomes.stream()
-                .map(IndirectChromosome::getCurrentFitness)
-                .reduce(Integer::sum);
+    private void insertChild(IndirectChromosome child) {
+        long start = startTimer();
+        child.evaluate(directChromosome, fitnessCache);
+        stopTimer(Metrics.Phase.EVALUATE, start);
+        countEvaluations(1);
 
-        return sum.orElse(0) / ((float) indirectChromosomes.size());
+        int slot = replaceableSlot(child.getCurrentFitness(), child.getHash());
+        if (slot >= 0) {
+            indirectChromosomes.set(slot, child);
+            replacedSlot(slot, child.getCurrentFitness(), child.getHash());
+        }
     }
 
     @Override
-    protected void evaluatePopulation() {
-        indirectChromosomes.forEach(indirectChromosome -> {
-            indirectChromosome.evaluate(directChromosome);
-            System.out.println(indirectChromosome);
-        });
+    protected int[] currentBestTour() {
+        return indirectChromosomes.stream().min(Comparator.comparingInt(IndirectChromosome::getCurrentFitness))
+                .map(chromosome -> chromosome.decodeInto(directChromosome, new int[dimension]))
+                .orElse(null);
     }
 
-    private List<IndirectChromosome> applyOperators(List<IndirectChromosome> chromosomes, double mutationProb) {
-        int targetSize = chromosomes.size();
-        List<IndirectChromosome> newGen = new ArrayList<>();
-        float r;
+    // The operand tour comes first, since every genome is only meaningful relative to it.
+    @Override
+    protected int populationSnapshotBytes() {
+        return 4 * dimension + indirectChromosomes.size() * 8 * ((numGenes + 63) >>> 6);
+    }
 
-        while (!chromosomes.isEmpty()) {
-            r = new Random().nextFloat();
+    @Override
+    protected void writePopulation(ByteBuffer buffer) {
+        putTour(buffer, directChromosome.getTour());
+        for (IndirectChromosome chromosome : indirectChromosomes) {
+            buffer.asLongBuffer().put(chromosome.getGenes());
+            buffer.position(buffer.position() + 8 * chromosome.getGenes().length);
+        }
+    }
 
-            if (chromosomes.size() > 1 && r > mutationProb) {
-                List<IndirectChromosome> selected = getTwoRandomIndirectChromosomes(chromosomes);
-                newGen.addAll(crossover(selected.get(0), selected.get(1)));
-            } else {
-                IndirectChromosome selected = getRandomIndirectChromosome(chromosomes);
-                newGen.add(mutation(selected));
-            }
+    @Override
+    protected void readPopulation(ByteBuffer buffer) {
+        directChromosome = new Chromosome(0, getTour(buffer, dimension), distances);
+        IndirectChromosome[] restored = new IndirectChromosome[numChromosomes];
+        for (int idx = 0; idx < numChromosomes; idx++) {
+            long[] genes = new long[(numGenes + 63) >>> 6];
+            buffer.asLongBuffer().get(genes);
+            buffer.position(buffer.position() + 8 * genes.length);
+            restored[idx] = new IndirectChromosome(genes, numGenes);
         }
+        indirectChromosomes = new ArrayList<>(Arrays.asList(restored));
+        evaluatePopulation();
+    }
 
-        assert newGen.size() == targetSize;
+    @Override
+    protected double diversity() {
+        return distinctFraction(indirectChromosomes.stream().mapToLong(IndirectChromosome::getHash).toArray());
+    }
 
-        return newGen;
+    @Override
+    List<?> copyBest(int count) {
+        return indirectChromosomes.stream()
+                .sorted(Comparator.comparingInt(IndirectChromosome::getCurrentFitness))
+                .limit(count)
+                .map(IndirectChromosome::new)
+                .collect(Collectors.toList());
     }
 
-    private List<IndirectChromosome> getTwoRandomIndirectChromosomes(List<IndirectChromosome> list) {
-        List<IndirectChromosome> result = new ArrayList<>();
-        IndirectChromosome chromosome1 = getRandomIndirectChromosome(list);
-        IndirectChromosome chromosome2 = getRandomIndirectChromosome(list);
+    // Gene i swaps a fixed pair of this population's operand, so immigrants from another island
+    // are re-evaluated against the local operand before they compete for a place.
+    @Override
+    void replaceWorst(List<?> immigrants) {
+        List<IndirectChromosome> worstFirst = indirectChromosomes.stream()
+                .sorted(Comparator.comparingInt(IndirectChromosome::getCurrentFitness).reversed())
+                .limit(immigrants.size())
+                .collect(Collectors.toList());
 
-        result.add(chromosome1);
-        result.add(chromosome2);
-        return result;
+        for (int idx = 0; idx < worstFirst.size(); idx++) {
+            IndirectChromosome immigrant = (IndirectChromosome) immigrants.get(idx);
+            IndirectChromosome local = new IndirectChromosome(immigrant.getGenes(), numGenes);
+            local.evaluate(directChromosome, fitnessCache);
+            if (local.getCurrentFitness() < worstFirst.get(idx).getCurrentFitness()) {
+                indirectChromosomes.set(indirectChromosomes.indexOf(worstFirst.get(idx)), local);
+            }
+        }
     }
 
-    private IndirectChromosome getRandomIndirectChromosome(List<IndirectChromosome> chromosomes) {
-        IndirectChromosome result = chromosomes.get(new Random().nextInt(chromosomes.size()));
-        chromosomes.remove(result);
-        return result;
+    @Override
+    protected Integer calculateBestFitness() {
+        return indirectChromosomes.stream()
+                .mapToInt(IndirectChromosome::getCurrentFitness)
+                .min()
+                .orElse(9999);
     }
 
-    private List<IndirectChromosome> crossover(IndirectChromosome chromosome1, IndirectChromosome chromosome2) {
-        int[] indexes = chromosome1.getTwoRandomIndexes();
-        int idx1 = indexes[0];
-        int idx2 = indexes[1];
-        IndirectChromosome child1 = new IndirectChromosome(chromosome1);
-        IndirectChromosome child2 = new IndirectChromosome(chromosome2);
+    @Override
+    protected float calculateAverageFitness() {
+        long sum = indirectChromosomes.stream()
+                .mapToLong(IndirectChromosome::getCurrentFitness)
+                .sum();
 
-        List<Boolean> parent1Genes = chromosome1.getGenes();
-        List<Boolean> parent2Genes = chromosome2.getGenes();
-        List<Boolean> child1Genes = getEmptyListOfGenes(child1.getGenes().size());
-        List<Boolean> child2Genes = getEmptyListOfGenes(child2.getGenes().size());
+        return sum / ((float) indirectChromosomes.size());
+    }
 
-        IntStream.range(idx1, idx2 + 1).forEach(idx -> {
-            child1Genes.set(idx, parent1Genes.get(idx));
-            child2Genes.set(idx, parent2Genes.get(idx));
+    // Only chromosomes whose genes changed since they were last evaluated are decoded again.
+    private void evaluatePopulation() {
+        engine.run(indirectChromosomes.size(), (worker, from, to) -> {
+            for (int idx = from; idx < to; idx++) {
+                IndirectChromosome indirectChromosome = indirectChromosomes.get(idx);
+                if (indirectChromosome.isDirty()) {
+                    long start = startTimer();
+                    indirectChromosome.evaluate(directChromosome, fitnessCache);
+                    stopTimer(Metrics.Phase.EVALUATE, start);
+                    countEvaluations(1);
+                }
+            }
         });
+    }
 
-        IntStream.range(0, idx1).forEach(idx -> {
-            child1Genes.set(idx, parent2Genes.get(idx));
-            child2Genes.set(idx, parent1Genes.get(idx));
+    private List<IndirectChromosome> applyOperators(List<IndirectChromosome> chromosomes, double mutationProb) {
+        IndirectChromosome[] newGen = new IndirectChromosome[chromosomes.size()];
+
+        engine.run(chromosomes.size(), (worker, from, to) -> {
+            int idx = from;
+
+            while (idx < to) {
+                float r = worker.random.nextFloat();
+
+                if (idx + 1 < to && r > mutationProb) {
+                    List<IndirectChromosome> children = crossover(chromosomes.get(idx), chromosomes.get(idx + 1), worker.random);
+                    newGen[idx] = children.get(0);
+                    newGen[idx + 1] = children.get(1);
+                    idx += 2;
+                } else {
+                    newGen[idx] = mutation(chromosomes.get(idx), worker.random);
+                    idx++;
+                }
+            }
         });
 
-        IntStream.range(idx2 + 1, parent1Genes.size()).forEach(idx -> {
-            child1Genes.set(idx, parent2Genes.get(idx));
-            child2Genes.set(idx, parent1Genes.get(idx));
-        });
+        return Arrays.asList(newGen);
+    }
+
+    private List<IndirectChromosome> crossover(IndirectChromosome chromosome1, IndirectChromosome chromosome2,
+                                               SplittableRandom random) {
+        long start = startTimer();
+        int[] indexes = chromosome1.getTwoRandomIndexes(random);
+        int idx1 = indexes[0];
+        int idx2 = indexes[1];
 
         List<IndirectChromosome> results = new ArrayList<>();
-        results.add(new IndirectChromosome(child1Genes, directChromosome));
-        results.add(new IndirectChromosome(child2Genes, directChromosome));
+        results.add(new IndirectChromosome(
+                IndirectChromosome.twoPointCrossover(chromosome1.getGenes(), chromosome2.getGenes(), idx1, idx2),
+                numGenes));
+        results.add(new IndirectChromosome(
+                IndirectChromosome.twoPointCrossover(chromosome2.getGenes(), chromosome1.getGenes(), idx1, idx2),
+                numGenes));
+        stopTimer(Metrics.Phase.CROSSOVER, start);
         return results;
     }
 
-    private IndirectChromosome mutation(IndirectChromosome chromosome) {
-        int index = chromosome.getRandomIndex();
-        chromosome.switchGeneAtIndex(index);
-        return new IndirectChromosome(chromosome.getGenes(), directChromosome);
+    // The same parent can win several tournaments, so the flip is applied to a copy of its genes.
+    private IndirectChromosome mutation(IndirectChromosome chromosome, SplittableRandom random) {
+        long start = startTimer();
+        IndirectChromosome child = new IndirectChromosome(chromosome);
+        child.switchGeneAtIndex(child.getRandomIndex(random));
+        stopTimer(Metrics.Phase.MUTATE, start);
+        return child;
     }
 
     private List<IndirectChromosome> selectParents(int tournamentSize) {
-        return IntStream.range(0, indirectChromosomes.size())
-                .mapToObj(value -> tournamentSelection(tournamentSize))
-                .collect(Collectors.toList());
-    }
-
-    private IndirectChromosome tournamentSelection(int tSize) {
-        List<IndirectChromosome> tournament = new ArrayList<>(indirectChromosomes);
-        Collections.shuffle(tournament);
-        tournament = tournament.subList(0, tSize);
-        Optional<IndirectChromosome> chromosome = tournament.stream()
-                .min(Comparator.comparing(indirectChromosome -> indirectChromosome.evaluate(directChromosome)));
-        return chromosome.orElse(indirectChromosomes.get(0));
+        int[] selected = selectParentIndexes(
+                idx -> indirectChromosomes.get(idx).getCurrentFitness(), indirectChromosomes.size(), tournamentSize);
+        IndirectChromosome[] parents = new IndirectChromosome[selected.length];
+        for (int idx = 0; idx < selected.length; idx++) {
+            parents[idx] = indirectChromosomes.get(selected[idx]);
+        }
+        return Arrays.asList(parents);
     }
 
-    private List<Boolean> getEmptyListOfGenes(int size) {
-        return new ArrayList<>(Collections.nCopies(size, null));
-    }
 }
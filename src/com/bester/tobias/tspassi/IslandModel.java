@@ -0,0 +1,136 @@
+package com.bester.tobias.tspassi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongFunction;
+
+public class IslandModel implements AutoCloseable {
+
+    enum Topology { RING, RANDOM }
+
+    private final List<DirectPopulation> islands = new ArrayList<>();
+    private final List<Queue<List<?>>> inboxes = new ArrayList<>();
+    private final int migrationInterval;
+    private final int migrationSize;
+    private final Topology topology;
+    private final long seed;
+
+    private final LongAdder migrationNanos = new LongAdder();
+    private final LongAdder migrantsSent = new LongAdder();
+    private long searchNanos;
+    private Termination termination;
+
+    // Each island gets a seed of its own and is expected to run on a single thread.
+    IslandModel(LongFunction<DirectPopulation> islandFactory, int numIslands, int migrationInterval, int migrationSize,
+                Topology topology, long seed) {
+        this.migrationInterval = migrationInterval;
+        this.migrationSize = migrationSize;
+        this.topology = topology;
+        this.seed = seed;
+
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int idx = 0; idx < numIslands; idx++) {
+            islands.add(islandFactory.apply(seeds.nextLong()));
+            inboxes.add(new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    // Shared by every island: the deadline, target and cancellation stop them all.
+    void useTermination(Termination termination) {
+        this.termination = termination;
+        islands.forEach(island -> island.useTermination(termination));
+    }
+
+    void createInitialPopulation() {
+        islands.forEach(DirectPopulation::createInitialPopulation);
+    }
+
+    void startSearch(int tournamentSize, double mutationProbability) {
+        System.out.format("Starting island search on %d islands%n", islands.size());
+        ExecutorService executor = Executors.newFixedThreadPool(islands.size());
+        long start = System.nanoTime();
+        if (termination != null) {
+            termination.start();
+        }
+
+        try {
+            List<Future<?>> runs = new ArrayList<>();
+            for (int idx = 0; idx < islands.size(); idx++) {
+                int islandIdx = idx;
+                runs.add(executor.submit(() -> evolveIsland(islandIdx, tournamentSize, mutationProbability)));
+            }
+            for (Future<?> run : runs) {
+                run.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        } finally {
+            executor.shutdown();
+        }
+
+        searchNanos = System.nanoTime() - start;
+    }
+
+    // Islands never wait for each other: emigrants are offered to the neighbour's queue and
+    // whatever has arrived in the island's own queue is taken in at the same point.
+    private void evolveIsland(int islandIdx, int tournamentSize, double mutationProbability) {
+        DirectPopulation island = islands.get(islandIdx);
+        SplittableRandom random = new SplittableRandom(seed + islandIdx);
+
+        for (int generation = 1; termination == null ? generation <= island.numIterations
+                : !termination.shouldStop(island); generation++) {
+            island.nextGeneration(tournamentSize, mutationProbability);
+
+            if (islands.size() > 1 && generation % migrationInterval == 0) {
+                long start = System.nanoTime();
+
+                List<?> emigrants = island.copyBest(migrationSize);
+                inboxes.get(nextIsland(islandIdx, random)).offer(emigrants);
+                migrantsSent.add(emigrants.size());
+
+                List<?> immigrants;
+                while ((immigrants = inboxes.get(islandIdx).poll()) != null) {
+                    island.replaceWorst(immigrants);
+                }
+
+                migrationNanos.add(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private int nextIsland(int islandIdx, SplittableRandom random) {
+        if (topology == Topology.RING) {
+            return (islandIdx + 1) % islands.size();
+        }
+        int target = random.nextInt(islands.size() - 1);
+        return target >= islandIdx ? target + 1 : target;
+    }
+
+    void printHistory() {
+        for (int idx = 0; idx < islands.size(); idx++) {
+            System.out.format("Island %d best fitness: %d%n", idx, islands.get(idx).getGlobalBestFitness());
+        }
+        System.out.format("Global best fitness: %d%n", getGlobalBestFitness());
+        System.out.format("Search time: %.1f ms, migration time: %.1f ms (summed over islands), migrants sent: %d%n",
+                searchNanos / 1e6, migrationNanos.sum() / 1e6, migrantsSent.sum());
+    }
+
+    @Override
+    public void close() {
+        islands.forEach(DirectPopulation::close);
+    }
+
+    int getGlobalBestFitness() {
+        return islands.stream().mapToInt(DirectPopulation::getGlobalBestFitness).min().orElse(Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,91 @@
+package com.bester.tobias.tspassi;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+// Exposes the latest snapshot as the MBean com.bester.tobias.tspassi:type=Metrics,name=<name>.
+public class JmxMetricsSink implements MetricsSink, MetricsMXBean {
+
+    private final ObjectName objectName;
+    private volatile MetricsSnapshot latest = new MetricsSnapshot(0, 0, 0, 0, 0, 0, 0, 0, new Histogram[0]);
+
+    JmxMetricsSink(String name) throws JMException {
+        objectName = new ObjectName("com.bester.tobias.tspassi:type=Metrics,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+    }
+
+    @Override
+    public void publish(MetricsSnapshot snapshot) {
+        latest = snapshot;
+    }
+
+    @Override
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            System.out.format("Could not unregister %s: %s%n", objectName, e.getMessage());
+        }
+    }
+
+    @Override
+    public long getGeneration() {
+        return latest.generation;
+    }
+
+    @Override
+    public long getElapsedMillis() {
+        return latest.elapsedMillis;
+    }
+
+    @Override
+    public int getBestFitness() {
+        return latest.bestFitness;
+    }
+
+    @Override
+    public double getAverageFitness() {
+        return latest.averageFitness;
+    }
+
+    @Override
+    public double getDiversity() {
+        return latest.diversity;
+    }
+
+    @Override
+    public long getEvaluations() {
+        return latest.evaluations;
+    }
+
+    @Override
+    public double getEvaluationsPerSecond() {
+        return latest.evaluationsPerSecond;
+    }
+
+    @Override
+    public long getAllocatedBytesPerGeneration() {
+        return latest.allocatedBytesPerGeneration;
+    }
+
+    @Override
+    public String[] getPhaseNames() {
+        Metrics.Phase[] phases = Metrics.Phase.values();
+        String[] names = new String[phases.length];
+        for (int idx = 0; idx < phases.length; idx++) {
+            names[idx] = phases[idx].name();
+        }
+        return names;
+    }
+
+    @Override
+    public long[] getPhaseTotalNanos() {
+        return latest.phaseTotalNanos.clone();
+    }
+
+    @Override
+    public long[] getPhaseP99Nanos() {
+        return latest.phaseP99Nanos.clone();
+    }
+}
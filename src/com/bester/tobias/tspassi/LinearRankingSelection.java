@@ -0,0 +1,22 @@
+package com.bester.tobias.tspassi;
+
+public class LinearRankingSelection extends RankBasedSelection {
+
+    private final double pressure;
+
+    // pressure in [1, 2] is the expected number of copies of the best chromosome; 1 is uniform.
+    LinearRankingSelection(double pressure) {
+        if (pressure < 1 || pressure > 2) {
+            throw new IllegalArgumentException("Linear ranking pressure must be in [1, 2] but was " + pressure);
+        }
+        this.pressure = pressure;
+    }
+
+    @Override
+    double weight(int rank, int size) {
+        if (size == 1) {
+            return 1;
+        }
+        return pressure - (2 * pressure - 2) * rank / (double) (size - 1);
+    }
+}
@@ -0,0 +1,218 @@
+package com.bester.tobias.tspassi;
+
+public class LocalSearch {
+
+    private static final int MAX_SEGMENT_LENGTH = 3;
+    private static final int MIN_CITIES = 8;
+
+    private final DistanceMatrix distances;
+    private final NeighborLists neighbors;
+    private final int maxMoves;
+    private final long maxNanos;
+
+    private final Tour tour;
+    private final int[] queue;
+    private final boolean[] queued;
+    private int queueHead;
+    private int queueSize;
+    private long hashDelta;
+    private boolean localOptimum;
+
+    // maxMoves and maxNanos bound the work spent on one chromosome; zero means no limit.
+    LocalSearch(DistanceMatrix distances, NeighborLists neighbors, int maxMoves, long maxNanos) {
+        this.distances = distances;
+        this.neighbors = neighbors;
+        this.maxMoves = maxMoves;
+        this.maxNanos = maxNanos;
+
+        int size = distances.getSize();
+        this.tour = Tour.forSize(size);
+        this.queue = new int[size];
+        this.queued = new boolean[size];
+    }
+
+    int improve(Chromosome chromosome) {
+        return improve(chromosome, null);
+    }
+
+    // Applies improving 2-opt and Or-opt moves until no city is left in the queue. A city whose
+    // neighbourhood gave no improvement is dropped (its don't-look bit is set) until one of its
+    // tour edges changes again. A termination that asks to stop ends the search early, and the
+    // moves made until then are kept.
+    int improve(Chromosome chromosome, Termination termination) {
+        int[] cities = chromosome.getTour();
+        int size = cities.length;
+        if (size < MIN_CITIES) {
+            localOptimum = false;
+            return 0;
+        }
+
+        tour.load(cities);
+        for (int idx = 0; idx < size; idx++) {
+            queue[idx] = cities[idx];
+            queued[cities[idx]] = true;
+        }
+        queueHead = 0;
+        queueSize = size;
+        hashDelta = 0;
+
+        long deadline = System.nanoTime() + maxNanos;
+        int moves = 0;
+        int totalGain = 0;
+
+        while (queueSize > 0) {
+            if (maxMoves > 0 && moves >= maxMoves) {
+                break;
+            }
+            if ((queueHead & 15) == 0 && (maxNanos > 0 && System.nanoTime() > deadline
+                    || termination != null && termination.stopRequested())) {
+                break;
+            }
+
+            int city = queue[queueHead];
+            queueHead = (queueHead + 1) % size;
+            queueSize--;
+            queued[city] = false;
+
+            int gain = twoOpt(city);
+            if (gain == 0) {
+                gain = orOpt(city);
+            }
+            if (gain > 0) {
+                totalGain += gain;
+                moves++;
+                push(city);
+            }
+        }
+
+        localOptimum = queueSize == 0;
+        while (queueSize > 0) {
+            queued[queue[queueHead]] = false;
+            queueHead = (queueHead + 1) % size;
+            queueSize--;
+        }
+
+        tour.store(cities);
+        chromosome.adjustFitness(-totalGain, hashDelta);
+        return totalGain;
+    }
+
+    // Whether the last improve ran until no move was left rather than stopping at a limit.
+    boolean reachedLocalOptimum() {
+        return localOptimum;
+    }
+
+    private int twoOpt(int a) {
+        for (int direction = 0; direction < 2; direction++) {
+            int b = direction == 0 ? next(a) : previous(a);
+            int removed = distances.distance(a, b);
+
+            for (int rank = 0; rank < neighbors.getNumNeighbors(); rank++) {
+                int c = neighbors.neighbor(a, rank);
+                int added = distances.distance(a, c);
+                if (added >= removed) {
+                    break;
+                }
+
+                int d = direction == 0 ? next(c) : previous(c);
+                if (c == b || d == a) {
+                    continue;
+                }
+
+                int gain = removed + distances.distance(c, d) - added - distances.distance(b, d);
+                if (gain > 0) {
+                    exchange(a, b, c, d);
+                    push(a);
+                    push(b);
+                    push(c);
+                    push(d);
+                    return gain;
+                }
+            }
+        }
+        return 0;
+    }
+
+    // Moves the segment of up to three cities that starts at first between a neighbour of one of
+    // its ends and that neighbour's successor, in whichever orientation is shorter.
+    private int orOpt(int first) {
+        int last = previous(first);
+        for (int length = 1; length <= MAX_SEGMENT_LENGTH; length++) {
+            last = next(last);
+            int before = previous(first);
+            int after = next(last);
+            int removalGain = distances.distance(before, first) + distances.distance(last, after)
+                    - distances.distance(before, after);
+            if (removalGain <= 0) {
+                continue;
+            }
+
+            for (int end = 0; end < 2; end++) {
+                int endCity = end == 0 ? first : last;
+
+                for (int rank = 0; rank < neighbors.getNumNeighbors(); rank++) {
+                    int c = neighbors.neighbor(endCity, rank);
+                    if (distances.distance(endCity, c) >= removalGain) {
+                        break;
+                    }
+                    int e = next(c);
+                    if (tour.between(first, c, last) || c == before || e == before) {
+                        continue;
+                    }
+
+                    int removedEdge = distances.distance(c, e);
+                    int keptOrientation = distances.distance(c, first) + distances.distance(last, e);
+                    int reversedOrientation = distances.distance(c, last) + distances.distance(first, e);
+                    int gain = removalGain + removedEdge - Math.min(keptOrientation, reversedOrientation);
+
+                    if (gain > 0) {
+                        // before [first..last] after ... c e  becomes  before after ... c [last..first] e,
+                        // and the segment is turned around again if that orientation is shorter.
+                        exchange(before, first, c, e);
+                        exchange(before, c, after, last);
+                        if (keptOrientation < reversedOrientation) {
+                            exchange(c, last, first, e);
+                        }
+                        push(before);
+                        push(after);
+                        push(first);
+                        push(last);
+                        push(c);
+                        push(e);
+                        return gain;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+
+    // 2-opt exchange of edges (t1, t2) and (t3, t4), where t2 follows t1 and t4 follows t3 in the
+    // same direction, for edges (t1, t3) and (t2, t4). Reversals may flip the whole tour's
+    // direction, so the current direction is looked up rather than assumed.
+    private void exchange(int t1, int t2, int t3, int t4) {
+        hashDelta ^= Chromosome.edgeHash(t1, t2) ^ Chromosome.edgeHash(t3, t4)
+                ^ Chromosome.edgeHash(t1, t3) ^ Chromosome.edgeHash(t2, t4);
+        if (next(t1) == t2) {
+            tour.reverse(t2, t3);
+        } else {
+            tour.reverse(t3, t2);
+        }
+    }
+
+    private int next(int city) {
+        return tour.next(city);
+    }
+
+    private int previous(int city) {
+        return tour.previous(city);
+    }
+
+    private void push(int city) {
+        if (!queued[city]) {
+            queued[city] = true;
+            queue[(queueHead + queueSize) % queue.length] = city;
+            queueSize++;
+        }
+    }
+}
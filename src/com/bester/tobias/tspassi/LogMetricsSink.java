@@ -0,0 +1,29 @@
+package com.bester.tobias.tspassi;
+
+import java.io.PrintStream;
+
+public class LogMetricsSink implements MetricsSink {
+
+    private final PrintStream out;
+
+    LogMetricsSink(PrintStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void publish(MetricsSnapshot snapshot) {
+        StringBuilder line = new StringBuilder(String.format(
+                "generation %d (%d ms): best %d, average %.1f, diversity %.2f, %.0f evals/s, %s/generation",
+                snapshot.generation, snapshot.elapsedMillis, snapshot.bestFitness, snapshot.averageFitness,
+                snapshot.diversity, snapshot.evaluationsPerSecond,
+                snapshot.allocatedBytesPerGeneration < 0 ? "?" : snapshot.allocatedBytesPerGeneration / 1024 + " KiB"));
+
+        for (Metrics.Phase phase : Metrics.Phase.values()) {
+            if (snapshot.phaseCount[phase.ordinal()] > 0) {
+                line.append(String.format(", %s %.0f ns (p99 %d)", phase.name().toLowerCase(),
+                        snapshot.phaseMeanNanos[phase.ordinal()], snapshot.phaseP99Nanos[phase.ordinal()]));
+            }
+        }
+        out.println(line);
+    }
+}
@@ -0,0 +1,130 @@
+package com.bester.tobias.tspassi;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// Per-population counters and timings. Each worker thread records into histograms of its own, so
+// timing a phase touches no shared cache line; the population thread closes each generation and
+// merges them into a snapshot for the sink every sampleInterval generations, so nothing is
+// printed or formatted on the hot path.
+public class Metrics {
+
+    enum Phase { SELECT, CROSSOVER, MUTATE, EVALUATE, LOCAL_SEARCH }
+
+    private final List<Histogram[]> threadPhaseNanos = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Histogram[]> phaseNanos = ThreadLocal.withInitial(this::newThreadPhaseNanos);
+    private final LongAdder evaluations = new LongAdder();
+    private final MetricsSink sink;
+    private final int sampleInterval;
+    private final com.sun.management.ThreadMXBean allocation;
+
+    private final long startNanos = System.nanoTime();
+    private long generation;
+    private long lastSampleNanos = startNanos;
+    private long lastSampleEvaluations;
+    private long lastSampleGeneration;
+    private long lastAllocatedBytes;
+
+    Metrics(MetricsSink sink, int sampleInterval) {
+        this.sink = sink;
+        this.sampleInterval = Math.max(1, sampleInterval);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemorySupported()) {
+            allocation = (com.sun.management.ThreadMXBean) threads;
+            allocation.setThreadAllocatedMemoryEnabled(true);
+            lastAllocatedBytes = allocatedBytes();
+        } else {
+            allocation = null;
+        }
+    }
+
+    private Histogram[] newThreadPhaseNanos() {
+        Histogram[] histograms = newPhaseNanos();
+        threadPhaseNanos.add(histograms);
+        return histograms;
+    }
+
+    private static Histogram[] newPhaseNanos() {
+        Histogram[] histograms = new Histogram[Phase.values().length];
+        for (int idx = 0; idx < histograms.length; idx++) {
+            histograms[idx] = new Histogram();
+        }
+        return histograms;
+    }
+
+    void record(Phase phase, long nanos) {
+        phaseNanos.get()[phase.ordinal()].record(nanos);
+    }
+
+    void countEvaluations(int count) {
+        evaluations.add(count);
+    }
+
+    Histogram getPhase(Phase phase) {
+        return mergedPhaseNanos()[phase.ordinal()];
+    }
+
+    private Histogram[] mergedPhaseNanos() {
+        Histogram[] merged = newPhaseNanos();
+        for (Histogram[] histograms : threadPhaseNanos) {
+            for (int idx = 0; idx < merged.length; idx++) {
+                merged[idx].add(histograms[idx]);
+            }
+        }
+        return merged;
+    }
+
+    long getEvaluations() {
+        return evaluations.sum();
+    }
+
+    // Called by the population once its generation is complete.
+    void endGeneration(DirectPopulation population) {
+        generation++;
+        if (generation % sampleInterval == 0) {
+            sink.publish(snapshot(population));
+        }
+    }
+
+    void close() {
+        sink.close();
+    }
+
+    private MetricsSnapshot snapshot(DirectPopulation population) {
+        long now = System.nanoTime();
+        long totalEvaluations = evaluations.sum();
+        long generations = generation - lastSampleGeneration;
+        double seconds = (now - lastSampleNanos) / 1e9;
+
+        long bytesPerGeneration = -1;
+        if (allocation != null) {
+            long allocated = allocatedBytes();
+            bytesPerGeneration = (allocated - lastAllocatedBytes) / generations;
+            lastAllocatedBytes = allocated;
+        }
+
+        MetricsSnapshot snapshot = new MetricsSnapshot(generation, (now - startNanos) / 1_000_000,
+                population.calculateBestFitness(), population.calculateAverageFitness(), population.diversity(),
+                totalEvaluations, (totalEvaluations - lastSampleEvaluations) / seconds, bytesPerGeneration, mergedPhaseNanos());
+
+        lastSampleNanos = now;
+        lastSampleEvaluations = totalEvaluations;
+        lastSampleGeneration = generation;
+        return snapshot;
+    }
+
+    // Summed over every live thread of the JVM, so concurrent populations are counted together
+    // and bytes allocated by threads that have since died are lost.
+    private long allocatedBytes() {
+        long total = 0;
+        for (long bytes : allocation.getThreadAllocatedBytes(allocation.getAllThreadIds())) {
+            total += Math.max(0, bytes);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,26 @@
+package com.bester.tobias.tspassi;
+
+// Read-only view of a population's latest metrics snapshot, published by JmxMetricsSink.
+public interface MetricsMXBean {
+    long getGeneration();
+
+    long getElapsedMillis();
+
+    int getBestFitness();
+
+    double getAverageFitness();
+
+    double getDiversity();
+
+    long getEvaluations();
+
+    double getEvaluationsPerSecond();
+
+    long getAllocatedBytesPerGeneration();
+
+    String[] getPhaseNames();
+
+    long[] getPhaseTotalNanos();
+
+    long[] getPhaseP99Nanos();
+}
@@ -0,0 +1,10 @@
+package com.bester.tobias.tspassi;
+
+// Receives a snapshot on the population thread every sampling interval.
+public interface MetricsSink {
+
+    void publish(MetricsSnapshot snapshot);
+
+    default void close() {
+    }
+}
@@ -0,0 +1,40 @@
+package com.bester.tobias.tspassi;
+
+// The state of a population's metrics at the end of a sampled generation. Rates cover the
+// generations since the previous sample; phase timings are cumulative.
+public class MetricsSnapshot {
+
+    final long generation;
+    final long elapsedMillis;
+    final int bestFitness;
+    final double averageFitness;
+    final double diversity;
+    final long evaluations;
+    final double evaluationsPerSecond;
+    final long allocatedBytesPerGeneration;
+
+    final long[] phaseCount = new long[Metrics.Phase.values().length];
+    final double[] phaseMeanNanos = new double[Metrics.Phase.values().length];
+    final long[] phaseP99Nanos = new long[Metrics.Phase.values().length];
+    final long[] phaseTotalNanos = new long[Metrics.Phase.values().length];
+
+    MetricsSnapshot(long generation, long elapsedMillis, int bestFitness, double averageFitness, double diversity,
+                    long evaluations, double evaluationsPerSecond, long allocatedBytesPerGeneration,
+                    Histogram[] phases) {
+        this.generation = generation;
+        this.elapsedMillis = elapsedMillis;
+        this.bestFitness = bestFitness;
+        this.averageFitness = averageFitness;
+        this.diversity = diversity;
+        this.evaluations = evaluations;
+        this.evaluationsPerSecond = evaluationsPerSecond;
+        this.allocatedBytesPerGeneration = allocatedBytesPerGeneration;
+
+        for (int idx = 0; idx < phases.length; idx++) {
+            phaseCount[idx] = phases[idx].getCount();
+            phaseMeanNanos[idx] = phases[idx].getMean();
+            phaseP99Nanos[idx] = phases[idx].getPercentile(0.99);
+            phaseTotalNanos[idx] = phases[idx].getSum();
+        }
+    }
+}
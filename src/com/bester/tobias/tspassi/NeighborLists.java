@@ -0,0 +1,113 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+
+public class NeighborLists {
+
+    private final int numNeighbors;
+    private final int[] neighbors;
+
+    // Cities are bucketed into a uniform grid of about two cities per cell, and each city's
+    // k nearest are found by scanning rings of cells outward from its own cell.
+    NeighborLists(double[] x, double[] y, int k) {
+        int size = x.length;
+        this.numNeighbors = Math.max(0, Math.min(k, size - 1));
+        this.neighbors = new int[size * numNeighbors];
+        if (numNeighbors == 0) {
+            return;
+        }
+
+        double minX = Arrays.stream(x).min().orElse(0);
+        double minY = Arrays.stream(y).min().orElse(0);
+        double width = Math.max(Arrays.stream(x).max().orElse(0) - minX, 1e-9);
+        double height = Math.max(Arrays.stream(y).max().orElse(0) - minY, 1e-9);
+        double cellSize = Math.max(Math.sqrt(width * height * 2 / size), Math.max(width, height) / 4096);
+        int columns = (int) (width / cellSize) + 1;
+        int rows = (int) (height / cellSize) + 1;
+
+        int[] cellOf = new int[size];
+        int[] cellStart = new int[columns * rows + 1];
+        for (int city = 0; city < size; city++) {
+            cellOf[city] = (int) ((y[city] - minY) / cellSize) * columns + (int) ((x[city] - minX) / cellSize);
+            cellStart[cellOf[city] + 1]++;
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            cellStart[cell + 1] += cellStart[cell];
+        }
+        int[] cellCities = new int[size];
+        int[] fill = Arrays.copyOf(cellStart, columns * rows);
+        for (int city = 0; city < size; city++) {
+            cellCities[fill[cellOf[city]]++] = city;
+        }
+
+        int[] best = new int[numNeighbors];
+        double[] bestDistance = new double[numNeighbors];
+
+        for (int city = 0; city < size; city++) {
+            int column = cellOf[city] % columns;
+            int row = cellOf[city] / columns;
+            int found = 0;
+
+            for (int ring = 0; ring <= Math.max(columns, rows); ring++) {
+                for (int r = row - ring; r <= row + ring; r++) {
+                    if (r < 0 || r >= rows) {
+                        continue;
+                    }
+                    boolean edgeRow = r == row - ring || r == row + ring;
+                    for (int c = column - ring; c <= column + ring; c += edgeRow ? 1 : 2 * ring) {
+                        if (c < 0 || c >= columns) {
+                            continue;
+                        }
+                        int cell = r * columns + c;
+                        for (int idx = cellStart[cell]; idx < cellStart[cell + 1]; idx++) {
+                            int other = cellCities[idx];
+                            if (other != city) {
+                                double xd = x[city] - x[other];
+                                double yd = y[city] - y[other];
+                                found = insert(best, bestDistance, found, other, xd * xd + yd * yd);
+                            }
+                        }
+                    }
+                }
+
+                // Cities in the next ring are at least ring * cellSize away from this city.
+                double reach = ring * cellSize;
+                if (found == numNeighbors && bestDistance[numNeighbors - 1] <= reach * reach) {
+                    break;
+                }
+            }
+
+            System.arraycopy(best, 0, neighbors, city * numNeighbors, numNeighbors);
+        }
+    }
+
+    // Keeps the closest cities seen so far sorted by distance.
+    private int insert(int[] best, double[] bestDistance, int found, int city, double distance) {
+        if (found == best.length && distance >= bestDistance[found - 1]) {
+            return found;
+        }
+
+        int idx = found == best.length ? found - 1 : found;
+        while (idx > 0 && bestDistance[idx - 1] > distance) {
+            best[idx] = best[idx - 1];
+            bestDistance[idx] = bestDistance[idx - 1];
+            idx--;
+        }
+        best[idx] = city;
+        bestDistance[idx] = distance;
+
+        return Math.min(found + 1, best.length);
+    }
+
+    int neighbor(int city, int rank) {
+        return neighbors[city * numNeighbors + rank];
+    }
+
+    int getNumNeighbors() {
+        return numNeighbors;
+    }
+
+    long footprintBytes() {
+        return 4L * neighbors.length;
+    }
+}
@@ -0,0 +1,48 @@
+package com.bester.tobias.tspassi;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+
+public class OptimalSolutions {
+
+    static final Path DEFAULT_FILE = Paths.get("problems/optimal_solutions.txt");
+
+    private final Map<String, Integer> optima;
+
+    private OptimalSolutions(Map<String, Integer> optima) {
+        this.optima = optima;
+    }
+
+    // Lines read "<problem> - <optimal tour length>"; anything else is skipped.
+    static OptimalSolutions load(Path file) throws IOException {
+        Map<String, Integer> optima = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.US_ASCII)) {
+            int separator = line.indexOf(" - ");
+            if (separator < 0) {
+                continue;
+            }
+            try {
+                optima.put(line.substring(0, separator).trim(), Integer.parseInt(line.substring(separator + 3).trim()));
+            } catch (NumberFormatException e) {
+                System.out.format("Skipping optimal solution line \"%s\"%n", line);
+            }
+        }
+        return new OptimalSolutions(optima);
+    }
+
+    // The known optimum, or -1 when the problem is not listed.
+    int get(String problemName) {
+        return optima.getOrDefault(problemName, -1);
+    }
+
+    // Percentage above the optimum, or NaN when the optimum is unknown.
+    double gap(String problemName, double fitness) {
+        int optimum = get(problemName);
+        return optimum <= 0 ? Double.NaN : (fitness - optimum) * 100 / optimum;
+    }
+}
@@ -0,0 +1,80 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public class OrderCrossover implements CrossoverOperator {
+
+    private final NeighborLists neighbors;
+    private final double neighborBias;
+    private boolean[] inSegment = new boolean[0];
+
+    // With neighbour lists, a fraction neighborBias of crossovers fill nearest-first.
+    OrderCrossover(NeighborLists neighbors, double neighborBias) {
+        this.neighbors = neighbors;
+        this.neighborBias = neighborBias;
+    }
+
+    @Override
+    public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, SplittableRandom random) {
+        int size = parent1.length;
+        if (inSegment.length != size) {
+            inSegment = new boolean[size];
+        }
+        int idx1 = random.nextInt(size);
+        int idx2 = random.nextInt(size - 1);
+        if (idx2 >= idx1) {
+            idx2++;
+        }
+
+        boolean nearestFill = neighbors != null && random.nextDouble() < neighborBias;
+        orderCrossover(parent1, parent2, child1, Math.min(idx1, idx2), Math.max(idx1, idx2), nearestFill);
+        orderCrossover(parent2, parent1, child2, Math.min(idx1, idx2), Math.max(idx1, idx2), nearestFill);
+    }
+
+    // The child keeps segment [idx1, idx2] of the first parent and fills the remaining positions,
+    // starting after idx2 and wrapping around, in the order of the second parent. With
+    // nearestFill the second parent is read starting at the closest city to the end of the
+    // segment that is not already in it, so the edge leaving the segment is a short one.
+    private void orderCrossover(int[] segmentParent, int[] orderParent, int[] child, int idx1, int idx2,
+                                boolean nearestFill) {
+        int size = child.length;
+
+        for (int idx = idx1; idx <= idx2; idx++) {
+            child[idx] = segmentParent[idx];
+            inSegment[segmentParent[idx]] = true;
+        }
+
+        int fillStart = (idx2 + 1) % size;
+        if (nearestFill) {
+            for (int rank = 0; rank < neighbors.getNumNeighbors(); rank++) {
+                int neighbor = neighbors.neighbor(segmentParent[idx2], rank);
+                if (!inSegment[neighbor]) {
+                    fillStart = indexOf(orderParent, neighbor);
+                    break;
+                }
+            }
+        }
+
+        int childIdx = (idx2 + 1) % size;
+        for (int offset = 0; offset < size; offset++) {
+            int city = orderParent[(fillStart + offset) % size];
+            if (!inSegment[city]) {
+                child[childIdx] = city;
+                childIdx = (childIdx + 1) % size;
+            }
+        }
+
+        for (int idx = idx1; idx <= idx2; idx++) {
+            inSegment[segmentParent[idx]] = false;
+        }
+    }
+
+    private static int indexOf(int[] tour, int city) {
+        for (int idx = 0; idx < tour.length; idx++) {
+            if (tour[idx] == city) {
+                return idx;
+            }
+        }
+        return -1;
+    }
+}
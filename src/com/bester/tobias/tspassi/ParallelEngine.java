@@ -0,0 +1,93 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+// Owns a ForkJoinPool when it has more than one worker; close it once the population is done.
+public class ParallelEngine implements AutoCloseable {
+
+    private final ForkJoinPool pool;
+    private final Worker[] workers;
+    private final long seed;
+
+    ParallelEngine(int numThreads, long seed) {
+        this.seed = seed;
+        SplittableRandom root = new SplittableRandom(seed);
+        this.workers = new Worker[Math.max(1, numThreads)];
+        for (int idx = 0; idx < workers.length; idx++) {
+            workers[idx] = new Worker(root.split());
+        }
+        this.pool = workers.length > 1 ? new ForkJoinPool(workers.length) : null;
+    }
+
+    // Chunk c of [0, total) is always handled by worker c, so the random numbers each chunk
+    // sees depend only on the seed and the number of threads, never on scheduling.
+    void run(int total, ChunkTask task) {
+        if (pool == null) {
+            task.run(workers[0], 0, total);
+            return;
+        }
+
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[workers.length];
+        for (int chunk = 0; chunk < workers.length; chunk++) {
+            Worker worker = workers[chunk];
+            int from = (int) ((long) chunk * total / workers.length);
+            int to = (int) ((long) (chunk + 1) * total / workers.length);
+            tasks[chunk] = pool.submit(() -> task.run(worker, from, to));
+        }
+        for (ForkJoinTask<?> submitted : tasks) {
+            submitted.join();
+        }
+    }
+
+    // Gives every worker a stream derived from the seed and the generation alone, so the random
+    // state of a run is fully described by those two numbers and a resumed run continues exactly
+    // as the uninterrupted one would have.
+    void reseed(long generation) {
+        SplittableRandom root = new SplittableRandom(seed ^ (generation + 1) * 0x9e3779b97f4a7c15L);
+        for (Worker worker : workers) {
+            worker.random = root.split();
+        }
+    }
+
+    long getSeed() {
+        return seed;
+    }
+
+    void forEachWorker(Consumer<Worker> action) {
+        Arrays.stream(workers).forEach(action);
+    }
+
+    Worker getWorker(int idx) {
+        return workers[idx];
+    }
+
+    int getNumThreads() {
+        return workers.length;
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+
+    interface ChunkTask {
+        void run(Worker worker, int from, int to);
+    }
+
+    static class Worker {
+
+        SplittableRandom random;
+        CrossoverOperator crossover;
+        LocalSearch localSearch;
+
+        Worker(SplittableRandom random) {
+            this.random = random;
+        }
+    }
+}
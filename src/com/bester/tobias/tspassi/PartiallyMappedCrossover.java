@@ -0,0 +1,52 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public class PartiallyMappedCrossover implements CrossoverOperator {
+
+    private int[] position1 = new int[0];
+    private int[] position2 = new int[0];
+
+    @Override
+    public void crossover(int[] parent1, int[] parent2, int[] child1, int[] child2, SplittableRandom random) {
+        int size = parent1.length;
+        if (position1.length != size) {
+            position1 = new int[size];
+            position2 = new int[size];
+        }
+        int idx1 = random.nextInt(size);
+        int idx2 = random.nextInt(size - 1);
+        if (idx2 >= idx1) {
+            idx2++;
+        }
+
+        for (int idx = 0; idx < size; idx++) {
+            position1[parent1[idx]] = idx;
+            position2[parent2[idx]] = idx;
+        }
+        map(parent1, parent2, position1, child1, Math.min(idx1, idx2), Math.max(idx1, idx2));
+        map(parent2, parent1, position2, child2, Math.min(idx1, idx2), Math.max(idx1, idx2));
+    }
+
+    // The child keeps segment [from, to] of the first parent in place and takes every other
+    // position from the second parent. A city that is already in the segment is replaced by
+    // following the mapping between the two parents' segments until one that is not.
+    private static void map(int[] segmentParent, int[] otherParent, int[] segmentPosition, int[] child,
+                            int from, int to) {
+        System.arraycopy(segmentParent, from, child, from, to - from + 1);
+
+        for (int idx = 0; idx < child.length; idx++) {
+            if (idx == from) {
+                idx = to;
+                continue;
+            }
+            int city = otherParent[idx];
+            int position = segmentPosition[city];
+            while (position >= from && position <= to) {
+                city = otherParent[position];
+                position = segmentPosition[city];
+            }
+            child[idx] = city;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.bester.tobias.tspassi;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Parsed problems with their distance matrices and neighbour lists, shared by every job that
+// solves them. A job holds a Lease for as long as it runs. Problems no job holds stay loaded for
+// the next job, and the least recently used of them are dropped while together they take more
+// than maxIdleBytes; problems in use are never dropped.
+public class ProblemCache {
+
+    private final long maxIdleBytes;
+    // In access order, so iteration starts at the least recently used problem. Guarded by this.
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long loads;
+    private long hits;
+    private long evictions;
+
+    ProblemCache(long maxIdleBytes) {
+        this.maxIdleBytes = maxIdleBytes;
+    }
+
+    // Loads the problem on first use; later callers wait for that load instead of repeating it.
+    Lease acquire(String problemName) {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.computeIfAbsent(problemName, Entry::new);
+            entry.references++;
+        }
+
+        try {
+            if (entry.load()) {
+                synchronized (this) {
+                    loads++;
+                }
+            } else {
+                synchronized (this) {
+                    hits++;
+                }
+            }
+        } catch (RuntimeException e) {
+            release(entry);
+            throw e;
+        }
+        return new Lease(entry);
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.references--;
+        if (entry.references == 0 && entry.problem == null) {
+            // The load failed; the next acquire tries again.
+            entries.remove(entry.name, entry);
+        }
+        evictIdle();
+    }
+
+    private void evictIdle() {
+        long idleBytes = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.references == 0) {
+                idleBytes += entry.footprintBytes();
+            }
+        }
+
+        Iterator<Entry> leastRecent = entries.values().iterator();
+        while (idleBytes > maxIdleBytes && leastRecent.hasNext()) {
+            Entry entry = leastRecent.next();
+            if (entry.references == 0) {
+                idleBytes -= entry.footprintBytes();
+                leastRecent.remove();
+                evictions++;
+            }
+        }
+    }
+
+    // One line per loaded problem, most recently used last.
+    synchronized List<String> describe() {
+        List<String> lines = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            lines.add(String.format(Locale.ROOT, "%s: %d cities, %d jobs, %.1f MB", entry.name, entry.dimension(),
+                    entry.references, entry.footprintBytes() / 1e6));
+        }
+        return lines;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "ProblemCache{ problems=%d, loads=%d, hits=%d, evictions=%d }",
+                entries.size(), loads, hits, evictions);
+    }
+
+    // A job's hold on one problem; close it once, when the job no longer needs the problem.
+    class Lease implements AutoCloseable {
+
+        private final Entry entry;
+        private boolean closed;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+        }
+
+        // Populations made from it share its parsed instance and distance matrix.
+        DirectPopulation problem() {
+            return entry.problem;
+        }
+
+        NeighborLists neighbors(int k) {
+            return entry.neighbors(k);
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                release(entry);
+            }
+        }
+    }
+
+    private static class Entry {
+
+        final String name;
+        private final Map<Integer, NeighborLists> neighbors = new HashMap<>();
+        volatile DirectPopulation problem;
+        // Kept apart from the lock, which is held for a whole load.
+        private volatile long footprintBytes;
+        // Guarded by the cache, not the entry.
+        int references;
+
+        Entry(String name) {
+            this.name = name;
+        }
+
+        // True when this call did the load.
+        synchronized boolean load() {
+            if (problem != null) {
+                return false;
+            }
+            DirectPopulation loaded = new DirectPopulation(name, 2, 0, 0, 1);
+            footprintBytes = loaded.distances.footprintBytes();
+            problem = loaded;
+            return true;
+        }
+
+        synchronized NeighborLists neighbors(int k) {
+            NeighborLists lists = neighbors.get(k);
+            if (lists == null) {
+                lists = new NeighborLists(problem.instance.getX(), problem.instance.getY(), k);
+                neighbors.put(k, lists);
+                footprintBytes += lists.footprintBytes();
+            }
+            return lists;
+        }
+
+        int dimension() {
+            DirectPopulation loaded = problem;
+            return loaded == null ? 0 : loaded.dimension;
+        }
+
+        long footprintBytes() {
+            return footprintBytes;
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Random-key genome: city c has key keys[c] in [0, 1), and the tour visits the cities in order of
+// their keys, ties broken by city number. Any key vector decodes to a valid tour, so crossover
+// and mutation work on the keys without repair.
+public class RandomKeyChromosome {
+
+    private static final int RADIX_BITS = 11;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int MIN_RADIX_CITIES = 256;
+    private static final ThreadLocal<long[]> PACKED = ThreadLocal.withInitial(() -> new long[0]);
+    private static final ThreadLocal<int[]> SORT_SCRATCH = ThreadLocal.withInitial(() -> new int[0]);
+    private static final ThreadLocal<int[]> COUNTS = ThreadLocal.withInitial(() -> new int[3 * RADIX]);
+
+    private final float[] keys;
+    private final int[] tour;
+    private final DistanceMatrix distances;
+    private int currentFitness;
+    private long hash;
+
+    // Set when keys changed in ways that moveKey did not follow, which only a full decode fixes.
+    private boolean dirty;
+
+    RandomKeyChromosome(int numCities, DistanceMatrix distances, SplittableRandom random) {
+        this(new float[numCities], distances);
+        for (int city = 0; city < numCities; city++) {
+            keys[city] = random.nextFloat();
+        }
+    }
+
+    // Takes ownership of the keys; the tour follows in the next decode.
+    RandomKeyChromosome(float[] keys, DistanceMatrix distances) {
+        this.keys = keys;
+        this.tour = new int[keys.length];
+        this.distances = distances;
+        this.dirty = true;
+    }
+
+    RandomKeyChromosome(RandomKeyChromosome copy) {
+        this.keys = copy.keys.clone();
+        this.tour = copy.tour.clone();
+        this.distances = copy.distances;
+        this.currentFitness = copy.currentFitness;
+        this.hash = copy.hash;
+        this.dirty = copy.dirty;
+    }
+
+    // Sorts the cities by key from scratch and measures the tour.
+    int decode() {
+        sortByKey(keys, tour);
+        currentFitness = tourLength();
+        hash = Chromosome.hashOf(tour);
+        dirty = false;
+        return currentFitness;
+    }
+
+    boolean isDirty() {
+        return dirty;
+    }
+
+    // Gives city a new key. A decoded genome moves the city to its new place in the tour by
+    // shifting the cities in between, and adjusts fitness and hash by the four edges that change,
+    // so only the changed key is sorted again.
+    void moveKey(int city, float key) {
+        if (dirty || tour.length < 4) {
+            keys[city] = key;
+            dirty = true;
+            return;
+        }
+
+        int size = tour.length;
+        int from = positionOf(city);
+        keys[city] = key;
+        int to = insertionPoint(city, from);
+
+        int before = tour[from == 0 ? size - 1 : from - 1];
+        int after = tour[from == size - 1 ? 0 : from + 1];
+        if (from < to) {
+            System.arraycopy(tour, from + 1, tour, from, to - from);
+        } else if (from > to) {
+            System.arraycopy(tour, to, tour, to + 1, from - to);
+        }
+        tour[to] = city;
+        int newBefore = tour[to == 0 ? size - 1 : to - 1];
+        int newAfter = tour[to == size - 1 ? 0 : to + 1];
+        if (newBefore == before && newAfter == after) {
+            return;
+        }
+
+        currentFitness += distances.distance(before, after) - distances.distance(before, city)
+                - distances.distance(city, after) + distances.distance(newBefore, city)
+                + distances.distance(city, newAfter) - distances.distance(newBefore, newAfter);
+        hash ^= Chromosome.edgeHash(before, city) ^ Chromosome.edgeHash(city, after)
+                ^ Chromosome.edgeHash(before, after) ^ Chromosome.edgeHash(newBefore, city)
+                ^ Chromosome.edgeHash(city, newAfter) ^ Chromosome.edgeHash(newBefore, newAfter);
+
+        assert currentFitness == tourLength()
+                : String.format("Adjusted fitness %d does not match full evaluation %d",
+                currentFitness, tourLength());
+    }
+
+    // Each child takes every key from one parent or the other, a fair coin per city.
+    static void uniformCrossover(float[] parent1, float[] parent2, float[] child1, float[] child2,
+                                 SplittableRandom random) {
+        for (int word = 0; word < parent1.length; word += 64) {
+            long bits = random.nextLong();
+            int end = Math.min(parent1.length, word + 64);
+            for (int city = word; city < end; city++, bits >>>= 1) {
+                boolean swap = (bits & 1) != 0;
+                child1[city] = swap ? parent2[city] : parent1[city];
+                child2[city] = swap ? parent1[city] : parent2[city];
+            }
+        }
+    }
+
+    // Each child's keys are one blend of the parents' keys, weight w for one child and 1 - w for
+    // the other, so cities both parents visit close together stay close together.
+    static void arithmeticCrossover(float[] parent1, float[] parent2, float[] child1, float[] child2,
+                                    SplittableRandom random) {
+        float weight = random.nextFloat();
+        for (int city = 0; city < parent1.length; city++) {
+            child1[city] = weight * parent1[city] + (1 - weight) * parent2[city];
+            child2[city] = (1 - weight) * parent1[city] + weight * parent2[city];
+        }
+    }
+
+    // Small tours sort (key bits, city) pairs packed into longs. Larger ones use a least
+    // significant digit radix sort of the key bits, which for non-negative floats order the same
+    // way as the floats; it is stable and starts from the cities in order, which breaks ties by
+    // city number just like the packed sort. All three digit counts are taken in one pass, and a
+    // pass whose digit is the same for every key is skipped.
+    static void sortByKey(float[] keys, int[] order) {
+        int size = keys.length;
+        if (size < MIN_RADIX_CITIES) {
+            long[] packed = PACKED.get();
+            if (packed.length != size) {
+                packed = new long[size];
+                PACKED.set(packed);
+            }
+            for (int city = 0; city < size; city++) {
+                packed[city] = (long) Float.floatToRawIntBits(keys[city]) << 32 | city;
+            }
+            Arrays.sort(packed);
+            for (int idx = 0; idx < size; idx++) {
+                order[idx] = (int) packed[idx];
+            }
+            return;
+        }
+
+        int[] scratch = SORT_SCRATCH.get();
+        if (scratch.length != size) {
+            scratch = new int[size];
+            SORT_SCRATCH.set(scratch);
+        }
+        int[] counts = COUNTS.get();
+        Arrays.fill(counts, 0);
+        for (int city = 0; city < size; city++) {
+            int bits = Float.floatToRawIntBits(keys[city]);
+            counts[bits & (RADIX - 1)]++;
+            counts[RADIX + (bits >>> RADIX_BITS & (RADIX - 1))]++;
+            counts[2 * RADIX + (bits >>> 2 * RADIX_BITS)]++;
+        }
+
+        for (int city = 0; city < size; city++) {
+            order[city] = city;
+        }
+        int[] source = order;
+        int[] target = scratch;
+        for (int pass = 0; pass < 3; pass++) {
+            int shift = pass * RADIX_BITS;
+            int offset = pass * RADIX;
+            if (counts[offset + (Float.floatToRawIntBits(keys[0]) >>> shift & (RADIX - 1))] == size) {
+                continue;
+            }
+            int start = 0;
+            for (int digit = offset; digit < offset + RADIX; digit++) {
+                int count = counts[digit];
+                counts[digit] = start;
+                start += count;
+            }
+            for (int idx = 0; idx < size; idx++) {
+                int city = source[idx];
+                target[counts[offset + (Float.floatToRawIntBits(keys[city]) >>> shift & (RADIX - 1))]++] = city;
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != order) {
+            System.arraycopy(source, 0, order, 0, size);
+        }
+    }
+
+    private int tourLength() {
+        return distances.tourLength(tour);
+    }
+
+    private boolean precedes(int city1, int city2) {
+        int bits1 = Float.floatToRawIntBits(keys[city1]);
+        int bits2 = Float.floatToRawIntBits(keys[city2]);
+        return bits1 < bits2 || bits1 == bits2 && city1 < city2;
+    }
+
+    // The tour is sorted, so the city is found by binary search on its (unchanged) key.
+    private int positionOf(int city) {
+        int low = 0;
+        int high = tour.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (precedes(tour[middle], city)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Where the city goes with its new key, counting positions as they will be once it has been
+    // taken out of position from.
+    private int insertionPoint(int city, int from) {
+        int low = 0;
+        int high = tour.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int other = tour[middle < from ? middle : middle + 1];
+            if (precedes(other, city)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    float[] getKeys() {
+        return keys;
+    }
+
+    int[] getTour() {
+        return tour;
+    }
+
+    long getHash() {
+        return hash;
+    }
+
+    int getCurrentFitness() {
+        assert !dirty : "Fitness read before the chromosome was decoded";
+        return currentFitness;
+    }
+
+    @Override
+    public String toString() {
+        return "RandomKeyChromosome{ currentFitness=" + currentFitness + " }";
+    }
+}
@@ -0,0 +1,279 @@
+package com.bester.tobias.tspassi;
+
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.stream.Collectors;
+
+// Indirect representation over random keys: unlike IndirectPopulation's fixed pair swaps, every
+// tour can be reached. Crossover mixes the parents' keys and needs a full decode of each child;
+// mutation gives one city a new key, and its child is decoded incrementally from the parent.
+public class RandomKeyPopulation extends DirectPopulation {
+
+    private List<RandomKeyChromosome> keyChromosomes = new ArrayList<>();
+    private boolean arithmetic;
+
+    public RandomKeyPopulation(String problemName, int numChromosomes, int numIterations, long seed, int numThreads) {
+        super(problemName, numChromosomes, numIterations, seed, numThreads);
+    }
+
+    public RandomKeyPopulation(DirectPopulation problem, int numChromosomes, int numIterations, long seed, int numThreads) {
+        super(problem, numChromosomes, numIterations, seed, numThreads);
+    }
+
+    static boolean isKeyCrossover(String name) {
+        return name.equals("uniform") || name.equals("arithmetic");
+    }
+
+    // uniform or arithmetic.
+    @Override
+    void useCrossover(String name) {
+        if (!isKeyCrossover(name)) {
+            throw new IllegalArgumentException("Unknown random-key crossover " + name);
+        }
+        arithmetic = name.equals("arithmetic");
+    }
+
+    @Override
+    public void createInitialPopulation() {
+        RandomKeyChromosome[] initial = new RandomKeyChromosome[numChromosomes];
+        engine.run(numChromosomes, (worker, from, to) -> {
+            for (int idx = from; idx < to; idx++) {
+                initial[idx] = new RandomKeyChromosome(dimension, distances, worker.random);
+            }
+        });
+        keyChromosomes = new ArrayList<>(Arrays.asList(initial));
+        evaluatePopulation();
+    }
+
+    @Override
+    void nextGeneration(int tournamentSize, double mutationProbability) {
+        engine.reseed(getGeneration());
+        if (getGenerationModel() == GenerationModel.STEADY_STATE) {
+            steadyStateGeneration(tournamentSize, mutationProbability);
+            recordGeneration();
+            return;
+        }
+
+        List<RandomKeyChromosome> elites = getGenerationModel() == GenerationModel.ELITIST ? copyElites() : null;
+        long start = startTimer();
+        List<RandomKeyChromosome> parents = selectParents(tournamentSize);
+        stopTimer(Metrics.Phase.SELECT, start);
+
+        keyChromosomes = new ArrayList<>(applyOperators(parents, mutationProbability));
+        evaluatePopulation();
+        if (elites != null) {
+            int[] worst = worstSlots(idx -> keyChromosomes.get(idx).getCurrentFitness(),
+                    keyChromosomes.size(), elites.size());
+            for (int idx = 0; idx < elites.size(); idx++) {
+                if (elites.get(idx).getCurrentFitness() < keyChromosomes.get(worst[idx]).getCurrentFitness()) {
+                    keyChromosomes.set(worst[idx], elites.get(idx));
+                }
+            }
+        }
+
+        recordGeneration();
+    }
+
+    // Genomes are never changed once evaluated, so the elites can be carried over as they are.
+    private List<RandomKeyChromosome> copyElites() {
+        int[] best = bestSlots(idx -> keyChromosomes.get(idx).getCurrentFitness(), keyChromosomes.size(),
+                getNumElites());
+        List<RandomKeyChromosome> elites = new ArrayList<>(best.length);
+        for (int slot : best) {
+            elites.add(keyChromosomes.get(slot));
+        }
+        return elites;
+    }
+
+    private void steadyStateGeneration(int tournamentSize, double mutationProb) {
+        ParallelEngine.Worker worker = engine.getWorker(0);
+        int size = keyChromosomes.size();
+        prepareSteadyState(idx -> keyChromosomes.get(idx).getCurrentFitness(), idx -> keyChromosomes.get(idx).getHash(),
+                size, tournamentSize);
+
+        int produced = 0;
+        while (produced < size) {
+            long start = startTimer();
+            RandomKeyChromosome parent1 = keyChromosomes.get(selectParent(worker.random));
+            RandomKeyChromosome parent2 = keyChromosomes.get(selectParent(worker.random));
+            stopTimer(Metrics.Phase.SELECT, start);
+
+            if (produced + 1 < size && worker.random.nextFloat() > mutationProb) {
+                RandomKeyChromosome[] children = crossover(parent1, parent2, worker.random);
+                insertChild(children[0]);
+                insertChild(children[1]);
+                produced += 2;
+            } else {
+                insertChild(mutation(parent1, worker.random));
+                produced++;
+            }
+        }
+    }
+
+    private void insertChild(RandomKeyChromosome child) {
+        evaluate(child);
+        int slot = replaceableSlot(child.getCurrentFitness(), child.getHash());
+        if (slot >= 0) {
+            keyChromosomes.set(slot, child);
+            replacedSlot(slot, child.getCurrentFitness(), child.getHash());
+        }
+    }
+
+    @Override
+    protected int[] currentBestTour() {
+        return keyChromosomes.stream().min(Comparator.comparingInt(RandomKeyChromosome::getCurrentFitness))
+                .map(chromosome -> chromosome.getTour().clone())
+                .orElse(null);
+    }
+
+    // Only the keys are kept; the tours are decoded again on restore.
+    @Override
+    protected int populationSnapshotBytes() {
+        return keyChromosomes.size() * 4 * dimension;
+    }
+
+    @Override
+    protected void writePopulation(ByteBuffer buffer) {
+        for (RandomKeyChromosome chromosome : keyChromosomes) {
+            buffer.asFloatBuffer().put(chromosome.getKeys());
+            buffer.position(buffer.position() + 4 * dimension);
+        }
+    }
+
+    @Override
+    protected void readPopulation(ByteBuffer buffer) {
+        RandomKeyChromosome[] restored = new RandomKeyChromosome[numChromosomes];
+        for (int idx = 0; idx < numChromosomes; idx++) {
+            float[] keys = new float[dimension];
+            buffer.asFloatBuffer().get(keys);
+            buffer.position(buffer.position() + 4 * dimension);
+            restored[idx] = new RandomKeyChromosome(keys, distances);
+        }
+        keyChromosomes = new ArrayList<>(Arrays.asList(restored));
+        evaluatePopulation();
+    }
+
+    @Override
+    protected double diversity() {
+        return distinctFraction(keyChromosomes.stream().mapToLong(RandomKeyChromosome::getHash).toArray());
+    }
+
+    @Override
+    List<?> copyBest(int count) {
+        return keyChromosomes.stream()
+                .sorted(Comparator.comparingInt(RandomKeyChromosome::getCurrentFitness))
+                .limit(count)
+                .map(RandomKeyChromosome::new)
+                .collect(Collectors.toList());
+    }
+
+    // Keys decode the same way on every island, so immigrants keep their fitness.
+    @Override
+    void replaceWorst(List<?> immigrants) {
+        List<RandomKeyChromosome> worstFirst = keyChromosomes.stream()
+                .sorted(Comparator.comparingInt(RandomKeyChromosome::getCurrentFitness).reversed())
+                .limit(immigrants.size())
+                .collect(Collectors.toList());
+
+        for (int idx = 0; idx < worstFirst.size(); idx++) {
+            RandomKeyChromosome immigrant = (RandomKeyChromosome) immigrants.get(idx);
+            if (immigrant.getCurrentFitness() < worstFirst.get(idx).getCurrentFitness()) {
+                keyChromosomes.set(keyChromosomes.indexOf(worstFirst.get(idx)), immigrant);
+            }
+        }
+    }
+
+    @Override
+    protected Integer calculateBestFitness() {
+        return keyChromosomes.stream()
+                .mapToInt(RandomKeyChromosome::getCurrentFitness)
+                .min()
+                .orElse(9999);
+    }
+
+    @Override
+    protected float calculateAverageFitness() {
+        long sum = keyChromosomes.stream()
+                .mapToLong(RandomKeyChromosome::getCurrentFitness)
+                .sum();
+
+        return sum / ((float) keyChromosomes.size());
+    }
+
+    private void evaluatePopulation() {
+        engine.run(keyChromosomes.size(), (worker, from, to) -> {
+            for (int idx = from; idx < to; idx++) {
+                evaluate(keyChromosomes.get(idx));
+            }
+        });
+    }
+
+    // A mutated child arrives already measured by moveKey; it is counted all the same, since that
+    // is where a direct mutation's evaluation would have gone.
+    private void evaluate(RandomKeyChromosome chromosome) {
+        long start = startTimer();
+        if (chromosome.isDirty()) {
+            chromosome.decode();
+        }
+        stopTimer(Metrics.Phase.EVALUATE, start);
+        countEvaluations(1);
+    }
+
+    private List<RandomKeyChromosome> applyOperators(List<RandomKeyChromosome> chromosomes, double mutationProb) {
+        RandomKeyChromosome[] newGen = new RandomKeyChromosome[chromosomes.size()];
+
+        engine.run(chromosomes.size(), (worker, from, to) -> {
+            int idx = from;
+
+            while (idx < to) {
+                float r = worker.random.nextFloat();
+
+                if (idx + 1 < to && r > mutationProb) {
+                    RandomKeyChromosome[] children = crossover(chromosomes.get(idx), chromosomes.get(idx + 1), worker.random);
+                    newGen[idx] = children[0];
+                    newGen[idx + 1] = children[1];
+                    idx += 2;
+                } else {
+                    newGen[idx] = mutation(chromosomes.get(idx), worker.random);
+                    idx++;
+                }
+            }
+        });
+
+        return Arrays.asList(newGen);
+    }
+
+    private RandomKeyChromosome[] crossover(RandomKeyChromosome parent1, RandomKeyChromosome parent2,
+                                            SplittableRandom random) {
+        long start = startTimer();
+        float[] keys1 = new float[dimension];
+        float[] keys2 = new float[dimension];
+        if (arithmetic) {
+            RandomKeyChromosome.arithmeticCrossover(parent1.getKeys(), parent2.getKeys(), keys1, keys2, random);
+        } else {
+            RandomKeyChromosome.uniformCrossover(parent1.getKeys(), parent2.getKeys(), keys1, keys2, random);
+        }
+        stopTimer(Metrics.Phase.CROSSOVER, start);
+        return new RandomKeyChromosome[]{
+                new RandomKeyChromosome(keys1, distances), new RandomKeyChromosome(keys2, distances)};
+    }
+
+    // The same parent can win several tournaments, so the new key goes into a copy.
+    private RandomKeyChromosome mutation(RandomKeyChromosome chromosome, SplittableRandom random) {
+        long start = startTimer();
+        RandomKeyChromosome child = new RandomKeyChromosome(chromosome);
+        child.moveKey(random.nextInt(dimension), random.nextFloat());
+        stopTimer(Metrics.Phase.MUTATE, start);
+        return child;
+    }
+
+    private List<RandomKeyChromosome> selectParents(int tournamentSize) {
+        int[] selected = selectParentIndexes(
+                idx -> keyChromosomes.get(idx).getCurrentFitness(), keyChromosomes.size(), tournamentSize);
+        RandomKeyChromosome[] parents = new RandomKeyChromosome[selected.length];
+        for (int idx = 0; idx < selected.length; idx++) {
+            parents[idx] = keyChromosomes.get(selected[idx]);
+        }
+        return Arrays.asList(parents);
+    }
+}
@@ -0,0 +1,58 @@
+package com.bester.tobias.tspassi;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Roulette-wheel selection over ranks: the population is sorted once per generation and each
+// draw is a binary search over the cumulative rank weights.
+public abstract class RankBasedSelection implements SelectionStrategy {
+
+    private int[] byRank = new int[0];
+    private long[] sortKeys = new long[0];
+    private double[] cumulative = new double[0];
+
+    // Relative weight of the chromosome at rank (0 is the shortest tour) in a population of size.
+    abstract double weight(int rank, int size);
+
+    @Override
+    public void prepare(int[] fitness) {
+        int size = fitness.length;
+        if (byRank.length != size) {
+            byRank = new int[size];
+            sortKeys = new long[size];
+            cumulative = new double[size];
+        }
+
+        // Fitness in the high half and index in the low half sorts by fitness without boxing.
+        for (int idx = 0; idx < size; idx++) {
+            sortKeys[idx] = ((long) fitness[idx] << 32) | idx;
+        }
+        Arrays.sort(sortKeys);
+
+        double total = 0;
+        for (int rank = 0; rank < size; rank++) {
+            byRank[rank] = (int) sortKeys[rank];
+            total += weight(rank, size);
+            cumulative[rank] = total;
+        }
+    }
+
+    @Override
+    public int select(int[] fitness, SplittableRandom random) {
+        return byRank[rankAt(random.nextDouble() * cumulative[cumulative.length - 1])];
+    }
+
+    int rankAt(double point) {
+        int rank = Arrays.binarySearch(cumulative, point);
+        rank = rank < 0 ? -rank - 1 : rank + 1;
+        return Math.min(rank, cumulative.length - 1);
+    }
+
+    int chromosomeAt(int rank) {
+        return byRank[rank];
+    }
+
+    double totalWeight() {
+        return cumulative[cumulative.length - 1];
+    }
+}
@@ -0,0 +1,28 @@
+package com.bester.tobias.tspassi;
+
+public class ScalarTourKernel implements TourKernel {
+
+    private final double[] x;
+    private final double[] y;
+
+    ScalarTourKernel(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public int length(int[] tour) {
+        int last = tour[tour.length - 1];
+        double previousX = x[last];
+        double previousY = y[last];
+        int length = 0;
+        for (int city : tour) {
+            double xd = x[city] - previousX;
+            double yd = y[city] - previousY;
+            length += Math.round((float) Math.sqrt((xd * xd) + (yd * yd)));
+            previousX = x[city];
+            previousY = y[city];
+        }
+        return length;
+    }
+}
@@ -0,0 +1,19 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public interface SelectionStrategy {
+
+    // Called once per generation on the population's thread, before any worker selects.
+    default void prepare(int[] fitness) {
+    }
+
+    int select(int[] fitness, SplittableRandom random);
+
+    // Fills selected[from, to) with population indexes; workers call this for disjoint ranges.
+    default void select(int[] fitness, int[] selected, int from, int to, SplittableRandom random) {
+        for (int idx = from; idx < to; idx++) {
+            selected[idx] = select(fitness, random);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.bester.tobias.tspassi;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+// One search run by a SolverService. Every improvement of the best-so-far tour is kept as one
+// line of JSON, so a client that starts reading late still sees the whole trace; the job's own
+// lock guards the lines and the state, and waiters are woken on every change.
+public class SolverJob {
+
+    enum State { QUEUED, RUNNING, DONE, FAILED }
+
+    // Problem names become file names under problems/, so nothing that could leave it is allowed.
+    private static final Pattern PROBLEM_NAME = Pattern.compile("[A-Za-z0-9_-]+");
+    private static final Set<String> CROSSOVERS = Set.of("ox", "pmx", "erx", "eax");
+    private static final int CANDIDATE_NEIGHBORS = 10;
+
+    final long id;
+    private final String problem;
+    private final String representation;
+    private final int population;
+    private final int tournament;
+    private final double mutation;
+    private final String crossover;
+    private final DirectPopulation.GenerationModel model;
+    private final int elites;
+    private final int iterations;
+    private final long seed;
+    private final double neighborBias;
+    private final int localSearchMoves;
+    private final long adaptive;
+    private final Termination termination;
+
+    private final List<String> events = new ArrayList<>();
+    private State state = State.QUEUED;
+    private String error;
+    private int best = Integer.MAX_VALUE;
+    private int[] bestTour;
+    private long generations;
+    private long evaluations;
+    private long startNanos;
+    private long millis;
+
+    // Keys as for BatchRunner, one value each: problem, representation, population, tournament,
+    // mutation, crossover (a key crossover for random-key), model, elites, iterations, seed,
+    // seconds, evaluations, stagnation, targetGap and adaptive, plus neighborBias and localSearch
+    // (moves per child, direct only). seconds is capped at maxSeconds, which is also the default.
+    SolverJob(long id, Properties spec, long maxSeconds, OptimalSolutions optimalSolutions) {
+        this.id = id;
+        problem = spec.getProperty("problem", "st70");
+        representation = spec.getProperty("representation", "direct");
+        population = Integer.parseInt(spec.getProperty("population", "20"));
+        tournament = Integer.parseInt(spec.getProperty("tournament", "4"));
+        mutation = Double.parseDouble(spec.getProperty("mutation", "0.7"));
+        crossover = spec.getProperty("crossover", representation.equals("random-key") ? "uniform" : "ox");
+        model = DirectPopulation.GenerationModel.valueOf(
+                spec.getProperty("model", "generational").toUpperCase(Locale.ROOT).replace('-', '_'));
+        elites = Integer.parseInt(spec.getProperty("elites", "2"));
+        iterations = Integer.parseInt(spec.getProperty("iterations", String.valueOf(Integer.MAX_VALUE)));
+        seed = Long.parseLong(spec.getProperty("seed", String.valueOf(System.nanoTime())));
+        neighborBias = Double.parseDouble(spec.getProperty("neighborBias", "0"));
+        localSearchMoves = Integer.parseInt(spec.getProperty("localSearch", "0"));
+        adaptive = Long.parseLong(spec.getProperty("adaptive", "0"));
+
+        if (!PROBLEM_NAME.matcher(problem).matches()) {
+            throw new IllegalArgumentException("Invalid problem name " + problem);
+        }
+        if (!representation.equals("direct") && !representation.equals("indirect")
+                && !representation.equals("random-key")) {
+            throw new IllegalArgumentException("Unknown representation " + representation);
+        }
+        if (representation.equals("random-key") ? !RandomKeyPopulation.isKeyCrossover(crossover)
+                : representation.equals("direct") && !CROSSOVERS.contains(crossover)) {
+            throw new IllegalArgumentException("Unknown crossover " + crossover + " for " + representation);
+        }
+        if (population < 2 || tournament < 1) {
+            throw new IllegalArgumentException("A population needs at least 2 members and tournaments 1");
+        }
+
+        long seconds = Long.parseLong(spec.getProperty("seconds", "0"));
+        termination = new Termination()
+                .withWallClock(Duration.ofSeconds(seconds <= 0 ? maxSeconds : Math.min(seconds, maxSeconds)))
+                .withEvaluationBudget(Long.parseLong(spec.getProperty("evaluations", "0")))
+                .withStagnationWindow(Long.parseLong(spec.getProperty("stagnation", "0")));
+        double targetGap = Double.parseDouble(spec.getProperty("targetGap", "-1"));
+        if (targetGap >= 0) {
+            termination.withTargetGap(optimalSolutions.get(problem), targetGap);
+        }
+    }
+
+    // The budget starts once the job has its problem, not while it waits for a worker or a load.
+    void run(ProblemCache problems) {
+        if (!begin()) {
+            return;
+        }
+
+        try (ProblemCache.Lease lease = problems.acquire(problem);
+             DirectPopulation search = createPopulation(lease)) {
+            termination.start();
+            search.createInitialPopulation();
+            while (!termination.shouldStop(search)) {
+                search.nextGeneration(tournament, mutation);
+                if (search.bestTourFitness < best) {
+                    improved(search);
+                }
+            }
+            finish(State.DONE, null, search);
+        } catch (Throwable e) {
+            // Errors as well, e.g. running out of memory or a failed assertion, so the job always
+            // ends and its event streams close.
+            finish(State.FAILED, e.toString(), null);
+        }
+    }
+
+    private DirectPopulation createPopulation(ProblemCache.Lease lease) {
+        DirectPopulation search = representation.equals("direct")
+                ? new DirectPopulation(lease.problem(), population, iterations, seed, 1)
+                : representation.equals("random-key")
+                ? new RandomKeyPopulation(lease.problem(), population, iterations, seed, 1)
+                : new IndirectPopulation(lease.problem(), population, iterations, seed, 1);
+
+        boolean direct = representation.equals("direct");
+        if (direct && (neighborBias > 0 || localSearchMoves > 0 || crossover.equals("eax"))) {
+            search.useNeighborLists(lease.neighbors(CANDIDATE_NEIGHBORS), neighborBias);
+        }
+        if (!representation.equals("indirect")) {
+            search.useCrossover(crossover);
+        }
+        if (direct && localSearchMoves > 0) {
+            search.useLocalSearch(localSearchMoves, 0);
+        }
+        if (direct && adaptive > 0) {
+            search.useAdaptiveRates(new AdaptiveRates(mutation, adaptive));
+        }
+        search.useGenerationModel(model, elites);
+        search.useTermination(termination);
+        return search;
+    }
+
+    // Stops the job whether it is queued or running; a queued job ends as soon as a worker takes it.
+    void cancel() {
+        termination.cancel();
+    }
+
+    private synchronized boolean begin() {
+        if (termination.stopRequested()) {
+            state = State.DONE;
+            events.add(endEvent());
+            notifyAll();
+            return false;
+        }
+        state = State.RUNNING;
+        startNanos = System.nanoTime();
+        notifyAll();
+        return true;
+    }
+
+    private synchronized void improved(DirectPopulation search) {
+        best = search.bestTourFitness;
+        bestTour = search.getBestTour();
+        generations = search.getGeneration();
+        evaluations = search.getEvaluations();
+        millis = (System.nanoTime() - startNanos) / 1_000_000;
+        events.add(String.format(Locale.ROOT,
+                "{\"job\":%d,\"event\":\"improved\",\"best\":%d,\"generation\":%d,\"evaluations\":%d,\"millis\":%d}",
+                id, best, generations, evaluations, millis));
+        notifyAll();
+    }
+
+    private synchronized void finish(State finalState, String failure, DirectPopulation search) {
+        if (search != null) {
+            generations = search.getGeneration();
+            evaluations = search.getEvaluations();
+        }
+        millis = (System.nanoTime() - startNanos) / 1_000_000;
+        state = finalState;
+        error = failure;
+        events.add(endEvent());
+        notifyAll();
+    }
+
+    // Lines from index from on, waiting up to waitMillis for one to arrive; empty once the job has
+    // ended and every line was handed out.
+    synchronized List<String> eventsFrom(int from, long waitMillis) throws InterruptedException {
+        if (from >= events.size() && !isFinished()) {
+            wait(waitMillis);
+        }
+        return new ArrayList<>(events.subList(Math.min(from, events.size()), events.size()));
+    }
+
+    synchronized boolean isFinished() {
+        return state == State.DONE || state == State.FAILED;
+    }
+
+    // The job's state with its best-so-far tour, as one line of JSON.
+    synchronized String describe() {
+        return String.format(Locale.ROOT,
+                "{\"job\":%d,\"problem\":\"%s\",\"representation\":\"%s\",\"state\":\"%s\",\"stop\":%s,"
+                        + "\"error\":%s,\"best\":%s,\"generation\":%d,\"evaluations\":%d,\"millis\":%d,\"tour\":%s}",
+                id, problem, representation, state.name().toLowerCase(Locale.ROOT), stopReason(),
+                error == null ? "null" : "\"" + error.replace("\\", "\\\\").replace("\"", "\\\"") + "\"",
+                bestTour == null ? "null" : best, generations, evaluations, millis,
+                bestTour == null ? "null" : Arrays.stream(bestTour).mapToObj(city -> String.valueOf(city + 1))
+                        .collect(Collectors.joining(",", "[", "]")));
+    }
+
+    private String endEvent() {
+        return String.format(Locale.ROOT,
+                "{\"job\":%d,\"event\":\"ended\",\"state\":\"%s\",\"stop\":%s,\"best\":%s,\"generation\":%d,"
+                        + "\"evaluations\":%d,\"millis\":%d}",
+                id, state.name().toLowerCase(Locale.ROOT), stopReason(), bestTour == null ? "null" : best,
+                generations, evaluations, millis);
+    }
+
+    private String stopReason() {
+        Termination.Reason reason = termination.getReason();
+        return reason == null ? "null" : "\"" + reason.name().toLowerCase(Locale.ROOT) + "\"";
+    }
+}
@@ -0,0 +1,218 @@
+package com.bester.tobias.tspassi;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Long-lived solver on localhost, so that a stream of runs pays for JVM startup and problem
+// parsing once. Usage:
+//   java -cp tspassi.jar com.bester.tobias.tspassi.SolverService [key=value ...]
+// with port (8710), workers (one single-threaded job each, default one per core), queue (jobs
+// waiting for a worker beyond which submissions are refused), maxSeconds (every job's wall-clock
+// cap, 600), cacheMegabytes (problems kept loaded while no job uses them, 512) and keepJobs
+// (finished jobs kept for GET, 256).
+//   POST   /jobs             body of key=value lines as for SolverJob; answers the job id
+//   GET    /jobs/<id>        the job's state and best-so-far tour
+//   GET    /jobs/<id>/events one JSON line per improvement, streamed until the job ends
+//   DELETE /jobs/<id>        cancels the job
+//   GET    /problems         the problem cache
+public class SolverService {
+
+    private static final long EVENT_WAIT_MILLIS = 1000;
+
+    private final int port;
+    private final long maxSeconds;
+    private final int keepJobs;
+    private final ThreadPoolExecutor workers;
+    private final ProblemCache problems;
+    private final OptimalSolutions optimalSolutions;
+    private final Map<Long, SolverJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private HttpServer server;
+
+    SolverService(Properties settings) throws IOException {
+        port = Integer.parseInt(settings.getProperty("port", "8710"));
+        int numWorkers = Integer.parseInt(settings.getProperty("workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int queue = Integer.parseInt(settings.getProperty("queue", "64"));
+        maxSeconds = Long.parseLong(settings.getProperty("maxSeconds", "600"));
+        keepJobs = Integer.parseInt(settings.getProperty("keepJobs", "256"));
+        problems = new ProblemCache(Long.parseLong(settings.getProperty("cacheMegabytes", "512")) << 20);
+        optimalSolutions = OptimalSolutions.load(OptimalSolutions.DEFAULT_FILE);
+        workers = new ThreadPoolExecutor(numWorkers, numWorkers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue));
+    }
+
+    public static void main(String[] args) throws IOException {
+        Properties settings = new Properties();
+        for (String arg : args) {
+            if (!arg.contains("=")) {
+                throw new IllegalArgumentException("Expected key=value, got " + arg);
+            }
+            String[] keyValue = arg.split("=", 2);
+            settings.setProperty(keyValue[0], keyValue[1]);
+        }
+
+        SolverService service = new SolverService(settings);
+        Runtime.getRuntime().addShutdownHook(new Thread(service::stop));
+        service.start();
+    }
+
+    // Requests are served on threads of their own, since an event stream holds one for the whole
+    // job; only the searches are bounded.
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/jobs", this::handleJobs);
+        server.createContext("/problems", this::handleProblems);
+        ExecutorService requests = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "solver-http");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(requests);
+        server.start();
+        System.out.format("Solver service listening on http://localhost:%d with %d workers%n",
+                server.getAddress().getPort(), workers.getMaximumPoolSize());
+    }
+
+    void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+        jobs.values().forEach(SolverJob::cancel);
+        workers.shutdown();
+    }
+
+    private void handleJobs(HttpExchange exchange) throws IOException {
+        try {
+            String[] path = exchange.getRequestURI().getPath().split("/");
+            String method = exchange.getRequestMethod();
+            if (path.length == 2 && method.equals("POST")) {
+                submit(exchange);
+                return;
+            }
+
+            SolverJob job = path.length >= 3 ? findJob(path[2]) : null;
+            if (job == null) {
+                respond(exchange, 404, "No such job");
+            } else if (path.length == 3 && method.equals("GET")) {
+                respond(exchange, 200, job.describe());
+            } else if (path.length == 3 && method.equals("DELETE")) {
+                job.cancel();
+                respond(exchange, 202, job.describe());
+            } else if (path.length == 4 && path[3].equals("events") && method.equals("GET")) {
+                streamEvents(exchange, job);
+            } else {
+                respond(exchange, 405, "Unsupported request");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void submit(HttpExchange exchange) throws IOException {
+        Properties spec = new Properties();
+        spec.load(new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8));
+
+        SolverJob job;
+        try {
+            job = new SolverJob(nextId.getAndIncrement(), spec, maxSeconds, optimalSolutions);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 400, e.getMessage());
+            return;
+        }
+
+        jobs.put(job.id, job);
+        try {
+            workers.execute(() -> job.run(problems));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            respond(exchange, 503, "All workers are busy and the queue is full");
+            return;
+        }
+        forgetFinishedJobs();
+        respond(exchange, 201, String.valueOf(job.id));
+    }
+
+    // Oldest first, since ids only grow.
+    private void forgetFinishedJobs() {
+        List<Long> finished = new ArrayList<>();
+        jobs.forEach((id, job) -> {
+            if (job.isFinished()) {
+                finished.add(id);
+            }
+        });
+        for (int idx = 0; idx < finished.size() - keepJobs; idx++) {
+            jobs.remove(finished.get(idx));
+        }
+    }
+
+    // Newline-delimited JSON in chunks, flushed per line, until the job's last line is out.
+    private void streamEvents(HttpExchange exchange, SolverJob job) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int sent = 0;
+        try {
+            while (true) {
+                List<String> lines = job.eventsFrom(sent, EVENT_WAIT_MILLIS);
+                if (lines.isEmpty() && job.isFinished()) {
+                    break;
+                }
+                for (String line : lines) {
+                    out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+                out.flush();
+                sent += lines.size();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void handleProblems(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                respond(exchange, 405, "Unsupported request");
+                return;
+            }
+            List<String> lines = new ArrayList<>(problems.describe());
+            lines.add(problems.toString());
+            respond(exchange, 200, String.join("\n", lines));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private SolverJob findJob(String id) {
+        try {
+            return jobs.get(Long.parseLong(id));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = (body + "\n").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+}
@@ -0,0 +1,47 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public class StochasticUniversalSampling implements SelectionStrategy {
+
+    private final RankBasedSelection weights;
+
+    // Samples the rank weights of the given strategy with evenly spaced pointers instead of
+    // independent spins, which keeps the number of copies close to the expected value.
+    StochasticUniversalSampling(RankBasedSelection weights) {
+        this.weights = weights;
+    }
+
+    @Override
+    public void prepare(int[] fitness) {
+        weights.prepare(fitness);
+    }
+
+    @Override
+    public int select(int[] fitness, SplittableRandom random) {
+        return weights.select(fitness, random);
+    }
+
+    // One spin per range; the picks come out in rank order, so they are shuffled before use.
+    @Override
+    public void select(int[] fitness, int[] selected, int from, int to, SplittableRandom random) {
+        int count = to - from;
+        if (count == 0) {
+            return;
+        }
+
+        double spacing = weights.totalWeight() / count;
+        double pointer = random.nextDouble() * spacing;
+        for (int idx = from; idx < to; idx++) {
+            selected[idx] = weights.chromosomeAt(weights.rankAt(pointer));
+            pointer += spacing;
+        }
+
+        for (int idx = to - 1; idx > from; idx--) {
+            int other = from + random.nextInt(idx - from + 1);
+            int chromosome = selected[idx];
+            selected[idx] = selected[other];
+            selected[other] = chromosome;
+        }
+    }
+}
@@ -3,6 +3,11 @@ package com.bester.tobias.tspassi;
 import javafx.application.Application;
 import javafx.stage.Stage;
 
+import javax.management.JMException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Optional;
 import java.util.stream.IntStream;
@@ -13,26 +18,75 @@ public class TSPAssi extends Application {
     private static int numChromosomes = 20;
     private static int numIterations = 10000;
     private static int tournamentSize = 8;
+    private static long seed = System.nanoTime();
+    private static int numThreads = Runtime.getRuntime().availableProcessors();
+    private static int numIslands = 1;
+    private static int migrationInterval = 50;
+    private static int migrationSize = 2;
+    private static int candidateNeighbors = 10;
+    private static double neighborBias = 0.5;
+    private static int localSearchMoves = 0;
+    private static int fitnessCacheSize = 1 << 16;
+    private static DirectPopulation.GenerationModel generationModel = DirectPopulation.GenerationModel.GENERATIONAL;
+    private static int numElites = 2;
+    // ox, pmx, erx or eax for the direct representation.
+    private static String crossover = "ox";
+    // The indirect representation's encoding: "pairs" swaps fixed pairs of one operand tour,
+    // "random-key" visits the cities in order of their keys and crosses keys over with keyCrossover
+    // (uniform or arithmetic).
+    private static String indirectEncoding = "pairs";
+    private static String keyCrossover = "uniform";
+    // Where metrics go every metricsInterval generations: "log", "jmx", "csv:<file>" or "none".
+    private static String metricsSink = "log";
+    private static int metricsInterval = 500;
+    // Full-resolution CSV of every generation's best and average fitness, or "" for none.
+    private static String historyFile = "";
+    // A snapshot every checkpointInterval generations (0 for none), which --resume picks up again.
+    private static int checkpointInterval = 100;
+    private static String resumeFile;
+    // Extra stopping rules on top of numIterations; zero (or a negative gap) leaves a rule out.
+    private static long timeLimitSeconds = 0;
+    private static long evaluationBudget = 0;
+    private static long stagnationWindow = 0;
+    private static double targetGapPercent = -1;
+    // Direct representation only: generations without a better tour after which a converged
+    // population gets immigrants or a restart, with the mutation probability following its edge
+    // entropy, e.g. 100; 0 keeps the fixed mutationProbability.
+    private static long adaptivePatience = 0;
     private double mutationProbability = 0.05;
     private Boolean directRepresentation = false;
 
     public static void main(String[] args) {
         ArrayList<Optional<String>> optArgs = new ArrayList<>();
-        IntStream.range(0, args.length).forEach(i -> optArgs.add(Optional.of(args[i])));
-        IntStream.range(args.length, 4).forEach(i -> optArgs.add(Optional.empty()));
+        for (String arg : args) {
+            if (arg.equals("--resume")) {
+                resumeFile = "";
+            } else if (arg.startsWith("--resume=")) {
+                resumeFile = arg.substring("--resume=".length());
+            } else {
+                optArgs.add(Optional.of(arg));
+            }
+        }
+        IntStream.range(optArgs.size(), 8).forEach(i -> optArgs.add(Optional.empty()));
 
         problemName = parseProblemArg(Integer.parseInt(optArgs.get(0).orElse("10")));
         numChromosomes = Integer.parseInt(optArgs.get(1).orElse("20"));
         numIterations = Integer.parseInt(optArgs.get(2).orElse("10000"));
         tournamentSize = Integer.parseInt(optArgs.get(3).orElse("4"));
+        seed = Long.parseLong(optArgs.get(4).orElse(String.valueOf(seed)));
+        numThreads = Integer.parseInt(optArgs.get(5).orElse(String.valueOf(numThreads)));
+        numIslands = Integer.parseInt(optArgs.get(6).orElse("1"));
+        localSearchMoves = Integer.parseInt(optArgs.get(7).orElse("0"));
         launch(args);
     }
 
     @Override
     public void start(Stage primaryStage) {
-        System.out.format("Starting TSP Project for problem %s%n", problemName);
+        System.out.format("Starting TSP Project for problem %s (seed %d, %d threads)%n", problemName, seed, numThreads);
 
-        if (directRepresentation) {
+        if (numIslands > 1) {
+            islandModel();
+        } else if (directRepresentation) {
             directRepresentation();
         } else {
             indirectRepresentation();
@@ -41,21 +95,192 @@ public class TSPAssi extends Application {
     }
 
     private void directRepresentation() {
-        DirectPopulation directPopulation = new DirectPopulation(problemName, numChromosomes, numIterations);
-        directPopulation.createInitialPopulation();
+        DirectPopulation resumed = resume(true);
+        DirectPopulation directPopulation = resumed != null ? resumed
+                : new DirectPopulation(problemName, numChromosomes, numIterations, seed, numThreads);
+        directPopulation.useNeighborLists(candidateNeighbors, neighborBias);
+        directPopulation.useFitnessCache(fitnessCacheSize);
+        directPopulation.useGenerationModel(generationModel, numElites);
+        directPopulation.useCrossover(crossover);
+        if (localSearchMoves > 0) {
+            directPopulation.useLocalSearch(localSearchMoves, 0);
+        }
+        if (adaptivePatience > 0) {
+            directPopulation.useAdaptiveRates(new AdaptiveRates(mutationProbability, adaptivePatience));
+        }
+        Metrics metrics = createMetrics();
+        FitnessHistoryWriter historyWriter = createHistoryWriter(resumed);
+        Checkpointer checkpointer = createCheckpointer(true);
+        directPopulation.useMetrics(metrics);
+        directPopulation.useHistoryWriter(historyWriter);
+        directPopulation.useCheckpoints(checkpointer);
+        directPopulation.useTermination(createTermination());
+        if (resumed == null) {
+            directPopulation.createInitialPopulation();
+        }
         directPopulation.startSearch(tournamentSize, mutationProbability);
         directPopulation.printHistory();
-//        directPopulation.printAverageFitnessGraph();
-//        directPopulation.printBestFitnessGraph();
+        directPopulation.close();
+        if (checkpointer != null) {
+            checkpointer.close();
+            System.out.println(checkpointer);
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (historyWriter != null) {
+            historyWriter.close();
+        }
+//        FitnessGraph.show(directPopulation.averageFitnessHistory, "Average Fitness");
+//        FitnessGraph.show(directPopulation.bestFitnessHistory, "Best Fitness");
     }
 
     private void indirectRepresentation() {
-        IndirectPopulation indirectPopulation = new IndirectPopulation(problemName, numChromosomes, numIterations);
-        indirectPopulation.createInitialPopulation();
+        DirectPopulation resumed = resume(false);
+        DirectPopulation indirectPopulation = resumed != null ? resumed : createIndirect();
+        if (indirectPopulation instanceof RandomKeyPopulation) {
+            indirectPopulation.useCrossover(keyCrossover);
+        }
+        indirectPopulation.useFitnessCache(fitnessCacheSize);
+        indirectPopulation.useGenerationModel(generationModel, numElites);
+        Metrics metrics = createMetrics();
+        FitnessHistoryWriter historyWriter = createHistoryWriter(resumed);
+        Checkpointer checkpointer = createCheckpointer(false);
+        indirectPopulation.useMetrics(metrics);
+        indirectPopulation.useHistoryWriter(historyWriter);
+        indirectPopulation.useCheckpoints(checkpointer);
+        indirectPopulation.useTermination(createTermination());
+        if (resumed == null) {
+            indirectPopulation.createInitialPopulation();
+        }
         indirectPopulation.startSearch(tournamentSize, mutationProbability);
         indirectPopulation.printHistory();
-        indirectPopulation.printAverageFitnessGraph();
-        indirectPopulation.printBestFitnessGraph();
+        indirectPopulation.close();
+        if (checkpointer != null) {
+            checkpointer.close();
+            System.out.println(checkpointer);
+        }
+        if (metrics != null) {
+            metrics.close();
+        }
+        if (historyWriter != null) {
+            historyWriter.close();
+        }
+        FitnessGraph.show(indirectPopulation.averageFitnessHistory, "Average Fitness");
+        FitnessGraph.show(indirectPopulation.bestFitnessHistory, "Best Fitness");
+    }
+
+    private void islandModel() {
+        DirectPopulation problem = directRepresentation
+                ? new DirectPopulation(problemName, numChromosomes, numIterations, seed, 1)
+                : new IndirectPopulation(problemName, numChromosomes, numIterations, seed, 1);
+        problem.useNeighborLists(candidateNeighbors, neighborBias);
+        IslandModel islandModel = new IslandModel(islandSeed -> {
+            DirectPopulation island = directRepresentation
+                    ? new DirectPopulation(problem, numChromosomes, numIterations, islandSeed, 1)
+                    : indirectEncoding.equals("random-key")
+                    ? new RandomKeyPopulation(problem, numChromosomes, numIterations, islandSeed, 1)
+                    : new IndirectPopulation(problem, numChromosomes, numIterations, islandSeed, 1);
+            if (directRepresentation) {
+                island.useCrossover(crossover);
+            } else if (indirectEncoding.equals("random-key")) {
+                island.useCrossover(keyCrossover);
+            }
+            if (directRepresentation && localSearchMoves > 0) {
+                island.useLocalSearch(localSearchMoves, 0);
+            }
+            if (directRepresentation && adaptivePatience > 0) {
+                island.useAdaptiveRates(new AdaptiveRates(mutationProbability, adaptivePatience));
+            }
+            island.useFitnessCache(fitnessCacheSize);
+            island.useGenerationModel(generationModel, numElites);
+            return island;
+        }, numIslands, migrationInterval, migrationSize, IslandModel.Topology.RING, seed);
+        islandModel.useTermination(createTermination());
+        islandModel.createInitialPopulation();
+        islandModel.startSearch(tournamentSize, mutationProbability);
+        islandModel.printHistory();
+        islandModel.close();
+        problem.close();
+    }
+
+    private static DirectPopulation createIndirect() {
+        if (indirectEncoding.equals("random-key")) {
+            return new RandomKeyPopulation(problemName, numChromosomes, numIterations, seed, numThreads);
+        }
+        return new IndirectPopulation(problemName, numChromosomes, numIterations, seed, numThreads);
+    }
+
+    private static Metrics createMetrics() {
+        try {
+            if (metricsSink.equals("log")) {
+                return new Metrics(new LogMetricsSink(System.out), metricsInterval);
+            } else if (metricsSink.equals("jmx")) {
+                return new Metrics(new JmxMetricsSink(problemName), metricsInterval);
+            } else if (metricsSink.startsWith("csv:")) {
+                return new Metrics(new CsvMetricsSink(Paths.get(metricsSink.substring(4))), metricsInterval);
+            }
+        } catch (IOException | JMException e) {
+            System.out.format("Metrics are off, could not open %s: %s%n", metricsSink, e.getMessage());
+        }
+        return null;
+    }
+
+    private static Termination createTermination() {
+        Termination termination = new Termination()
+                .withWallClock(Duration.ofSeconds(timeLimitSeconds))
+                .withEvaluationBudget(evaluationBudget)
+                .withStagnationWindow(stagnationWindow);
+        if (targetGapPercent >= 0) {
+            try {
+                int optimum = OptimalSolutions.load(OptimalSolutions.DEFAULT_FILE).get(problemName);
+                termination.withTargetGap(optimum, targetGapPercent);
+            } catch (IOException e) {
+                System.out.format("No target gap, could not read %s: %s%n", OptimalSolutions.DEFAULT_FILE, e.getMessage());
+            }
+        }
+        return termination;
+    }
+
+    // A resumed run keeps the rows its snapshot covers and appends the rest.
+    private static FitnessHistoryWriter createHistoryWriter(DirectPopulation resumed) {
+        if (historyFile.isEmpty()) {
+            return null;
+        }
+        try {
+            return new FitnessHistoryWriter(Paths.get(historyFile), resumed == null ? -1 : resumed.getGeneration());
+        } catch (IOException e) {
+            System.out.format("History export is off, could not open %s: %s%n", historyFile, e.getMessage());
+            return null;
+        }
+    }
+
+    private static Path checkpointFile(boolean direct) {
+        return resumeFile != null && !resumeFile.isEmpty() ? Paths.get(resumeFile)
+                : Paths.get("checkpoints", problemName + "-" + (direct ? "direct"
+                : indirectEncoding.equals("random-key") ? "random-key" : "indirect") + ".ckpt");
+    }
+
+    private static Checkpointer createCheckpointer(boolean direct) {
+        return checkpointInterval > 0 ? new Checkpointer(checkpointFile(direct), checkpointInterval) : null;
+    }
+
+    // The snapshot's own problem, seed and thread count win over the command line, so that the
+    // resumed run continues exactly as the interrupted one would have.
+    private static DirectPopulation resume(boolean direct) {
+        if (resumeFile == null) {
+            return null;
+        }
+        Path file = checkpointFile(direct);
+        try {
+            DirectPopulation population = Checkpointer.resume(file);
+            System.out.format("Resuming %s from %s at generation %d%n", population.problemName, file,
+                    population.getGeneration());
+            return population;
+        } catch (IOException e) {
+            System.out.format("Starting afresh, could not resume from %s: %s%n", file, e.getMessage());
+            return null;
+        }
     }
 
     private static String parseProblemArg(int number) {
@@ -0,0 +1,103 @@
+package com.bester.tobias.tspassi;
+
+import java.time.Duration;
+
+// Decides between generations whether a search goes on. The population's numIterations is always
+// a cap; a wall-clock budget, an evaluation budget, a stagnation window and a target fitness can
+// be added, and cancel() stops the search from any thread. The deadline, target and cancellation
+// hold for every population sharing one Termination (e.g. all islands), while generations,
+// evaluations and stagnation are counted per population.
+public class Termination {
+
+    enum Reason { GENERATIONS, DEADLINE, EVALUATIONS, STAGNATION, TARGET, CANCELLED }
+
+    private long wallClockNanos;
+    private long maxEvaluations;
+    private long stagnationWindow;
+    private int targetFitness = -1;
+
+    private volatile long deadline;
+    private volatile boolean started;
+    private volatile boolean stopped;
+    private volatile Reason reason;
+
+    Termination withWallClock(Duration budget) {
+        wallClockNanos = budget.toNanos();
+        return this;
+    }
+
+    Termination withEvaluationBudget(long evaluations) {
+        maxEvaluations = evaluations;
+        return this;
+    }
+
+    // Stops once the best-so-far tour has not improved for this many generations.
+    Termination withStagnationWindow(long generations) {
+        stagnationWindow = generations;
+        return this;
+    }
+
+    // Stops once the best-so-far tour is within gapPercent of the known optimum.
+    Termination withTargetGap(int optimum, double gapPercent) {
+        targetFitness = optimum <= 0 ? -1 : (int) Math.floor(optimum * (1 + gapPercent / 100));
+        return this;
+    }
+
+    // The clock starts with the first search that uses this Termination.
+    synchronized void start() {
+        if (!started) {
+            deadline = System.nanoTime() + wallClockNanos;
+            started = true;
+        }
+    }
+
+    void cancel() {
+        stop(Reason.CANCELLED);
+    }
+
+    boolean shouldStop(DirectPopulation population) {
+        if (stopRequested()) {
+            return true;
+        }
+        if (targetFitness >= 0 && population.bestTourFitness <= targetFitness) {
+            return stop(Reason.TARGET);
+        }
+
+        Reason local = null;
+        if (population.getGeneration() >= population.numIterations) {
+            local = Reason.GENERATIONS;
+        } else if (maxEvaluations > 0 && population.getEvaluations() >= maxEvaluations) {
+            local = Reason.EVALUATIONS;
+        } else if (stagnationWindow > 0 && population.getGeneration() - population.lastImprovement >= stagnationWindow) {
+            local = Reason.STAGNATION;
+        }
+        if (local != null && reason == null) {
+            reason = local;
+        }
+        return local != null;
+    }
+
+    // Cheap enough to check between chromosomes, so long phases can end within a generation.
+    boolean stopRequested() {
+        if (stopped) {
+            return true;
+        }
+        if (wallClockNanos > 0 && started && System.nanoTime() - deadline >= 0) {
+            return stop(Reason.DEADLINE);
+        }
+        return false;
+    }
+
+    private synchronized boolean stop(Reason why) {
+        if (!stopped) {
+            stopped = true;
+            reason = why;
+        }
+        return true;
+    }
+
+    // Why the last search stopped, or null while none has.
+    Reason getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,28 @@
+package com.bester.tobias.tspassi;
+
+// A cyclic tour that local search can query and reverse in place. Reversing a path may leave the
+// tour running the other way round, so callers look the direction up with next and previous
+// rather than assume it.
+public interface Tour {
+
+    // Takes the order of cities from the array; implementations may keep working on it directly.
+    void load(int[] cities);
+
+    // Writes the current order back into the array given to load, starting at any city.
+    void store(int[] cities);
+
+    int next(int city);
+
+    int previous(int city);
+
+    // Whether b lies on the path that runs forward from a to c, both ends included.
+    boolean between(int a, int b, int c);
+
+    // Reverses the path that runs forward from city from to city to.
+    void reverse(int from, int to);
+
+    // Small tours are kept as a plain array, large ones as a two-level list.
+    static Tour forSize(int size) {
+        return size >= TwoLevelListTour.MIN_CITIES ? new TwoLevelListTour(size) : new ArrayTour(size);
+    }
+}
@@ -0,0 +1,54 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+// Full tour length straight from the coordinates, without a distance matrix. Every edge is
+// rounded the TSPLIB way DistanceMatrix rounds it, Math.round((float) sqrt(dx * dx + dy * dy)),
+// so lengths agree with the matrix to the last unit.
+public interface TourKernel {
+
+    int length(int[] tour);
+
+    // The SIMD kernel when the JVM runs with --add-modules jdk.incubator.vector and its lanes
+    // round every edge of a random tour of this instance exactly as DistanceMatrix does,
+    // otherwise the scalar one.
+    static TourKernel create(double[] x, double[] y) {
+        TourKernel scalar = new ScalarTourKernel(x, y);
+        if (!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() || x.length < 2) {
+            return scalar;
+        }
+
+        VectorTourKernel vector;
+        try {
+            vector = new VectorTourKernel(x, y);
+        } catch (LinkageError e) {
+            return scalar;
+        }
+
+        int[] tour = new int[x.length];
+        for (int city = 0; city < tour.length; city++) {
+            tour[city] = city;
+        }
+        SplittableRandom random = new SplittableRandom(tour.length);
+        for (int idx = tour.length - 1; idx > 0; idx--) {
+            int other = random.nextInt(idx + 1);
+            int city = tour[idx];
+            tour[idx] = tour[other];
+            tour[other] = city;
+        }
+
+        double[] lengths = vector.edgeLengths(tour);
+        for (int idx = 0; idx < vector.fullVectorEdges(tour.length); idx++) {
+            int from = tour[idx];
+            int to = tour[idx == tour.length - 1 ? 0 : idx + 1];
+            double xd = x[from] - x[to];
+            double yd = y[from] - y[to];
+            if (lengths[idx] != Math.round((float) Math.sqrt((xd * xd) + (yd * yd)))) {
+                System.out.format("Vector tour kernel rounds edge %d-%d to %.0f, using the scalar one%n",
+                        from, to, lengths[idx]);
+                return scalar;
+            }
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,76 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+public class TournamentSelection implements SelectionStrategy {
+
+    // The identity permutation depends only on the population size, and the undo log only on the
+    // tournament size, so each is rebuilt only when its own size changes.
+    private static final ThreadLocal<int[]> PERMUTATION = ThreadLocal.withInitial(() -> new int[0]);
+    private static final ThreadLocal<int[]> SWAPS = ThreadLocal.withInitial(() -> new int[0]);
+
+    private final int tournamentSize;
+    private final boolean withReplacement;
+
+    TournamentSelection(int tournamentSize, boolean withReplacement) {
+        this.tournamentSize = tournamentSize;
+        this.withReplacement = withReplacement;
+    }
+
+    @Override
+    public int select(int[] fitness, SplittableRandom random) {
+        int size = Math.min(tournamentSize, fitness.length);
+        return withReplacement ? selectWithReplacement(fitness, size, random) : selectWithoutReplacement(fitness, size, random);
+    }
+
+    private int selectWithReplacement(int[] fitness, int size, SplittableRandom random) {
+        int best = random.nextInt(fitness.length);
+        for (int member = 1; member < size; member++) {
+            int candidate = random.nextInt(fitness.length);
+            if (fitness[candidate] < fitness[best]) {
+                best = candidate;
+            }
+        }
+        return best;
+    }
+
+    // A partial Fisher-Yates shuffle over a per-thread identity permutation draws distinct members
+    // in O(size). The swaps are undone afterwards, so the draw depends only on the random stream
+    // and not on which thread made the previous one.
+    private int selectWithoutReplacement(int[] fitness, int size, SplittableRandom random) {
+        int[] permutation = PERMUTATION.get();
+        if (permutation.length != fitness.length) {
+            permutation = new int[fitness.length];
+            for (int idx = 0; idx < fitness.length; idx++) {
+                permutation[idx] = idx;
+            }
+            PERMUTATION.set(permutation);
+        }
+        int[] swaps = SWAPS.get();
+        if (swaps.length < size) {
+            swaps = new int[size];
+            SWAPS.set(swaps);
+        }
+
+        int best = -1;
+        for (int member = 0; member < size; member++) {
+            int other = member + random.nextInt(fitness.length - member);
+            int candidate = permutation[other];
+            permutation[other] = permutation[member];
+            permutation[member] = candidate;
+            swaps[member] = other;
+
+            if (best < 0 || fitness[candidate] < fitness[best]) {
+                best = candidate;
+            }
+        }
+
+        for (int member = size - 1; member >= 0; member--) {
+            int other = swaps[member];
+            int candidate = permutation[member];
+            permutation[member] = permutation[other];
+            permutation[other] = candidate;
+        }
+        return best;
+    }
+}
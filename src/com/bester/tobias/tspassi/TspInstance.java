@@ -0,0 +1,225 @@
+package com.bester.tobias.tspassi;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+public class TspInstance {
+
+    private static final int BINARY_MAGIC = 0x54535042;
+    private static final int BINARY_VERSION = 1;
+    private static final int BINARY_HEADER_BYTES = 512;
+
+    private final String name;
+    private final String comment;
+    private final int dimension;
+    private final double[] x;
+    private final double[] y;
+
+    TspInstance(String name, String comment, double[] x, double[] y) {
+        this.name = name;
+        this.comment = comment;
+        this.dimension = x.length;
+        this.x = x;
+        this.y = y;
+    }
+
+    // Loads the binary sidecar next to the .tsp file when it is up to date, otherwise parses the
+    // text file and refreshes the sidecar for the next run.
+    static TspInstance load(Path tspFile) throws IOException {
+        Path binaryFile = tspFile.resolveSibling(tspFile.getFileName() + ".bin");
+
+        if (Files.exists(binaryFile)
+                && !Files.getLastModifiedTime(binaryFile).toInstant().isBefore(Files.getLastModifiedTime(tspFile).toInstant())) {
+            try {
+                return readBinary(binaryFile);
+            } catch (IOException | RuntimeException e) {
+                System.out.format("Ignoring unreadable instance cache %s: %s%n", binaryFile, e.getMessage());
+            }
+        }
+
+        TspInstance instance = parse(tspFile);
+        try {
+            instance.writeBinary(binaryFile);
+        } catch (IOException e) {
+            System.out.format("Could not write instance cache %s: %s%n", binaryFile, e.getMessage());
+        }
+        return instance;
+    }
+
+    static TspInstance parse(Path tspFile) throws IOException {
+        String name = tspFile.getFileName().toString();
+        String comment = "";
+        String edgeWeightType = "EUC_2D";
+        int dimension = -1;
+        double[] x = null;
+        double[] y = null;
+        int count = 0;
+
+        try (BufferedReader reader = Files.newBufferedReader(tspFile, StandardCharsets.US_ASCII)) {
+            boolean inCoords = false;
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+                if (line.equals("EOF")) {
+                    break;
+                }
+
+                if (inCoords) {
+                    if (count == dimension) {
+                        throw new IOException(String.format("%s has more than %d coordinates", tspFile, dimension));
+                    }
+                    int end = skipToken(line, 0);
+                    int start = skipSpaces(line, end);
+                    end = skipToken(line, start);
+                    x[count] = Double.parseDouble(line.substring(start, end));
+                    start = skipSpaces(line, end);
+                    end = skipToken(line, start);
+                    y[count] = Double.parseDouble(line.substring(start, end));
+                    count++;
+                    continue;
+                }
+
+                if (line.startsWith("NODE_COORD_SECTION")) {
+                    if (dimension < 0) {
+                        throw new IOException(String.format("%s has no DIMENSION before its coordinates", tspFile));
+                    }
+                    if (!edgeWeightType.equals("EUC_2D")) {
+                        throw new IOException(String.format("%s uses unsupported EDGE_WEIGHT_TYPE %s", tspFile, edgeWeightType));
+                    }
+                    x = new double[dimension];
+                    y = new double[dimension];
+                    inCoords = true;
+                    continue;
+                }
+
+                int colon = line.indexOf(':');
+                if (colon < 0) {
+                    continue;
+                }
+                String key = line.substring(0, colon).trim();
+                String value = line.substring(colon + 1).trim();
+
+                switch (key) {
+                    case "NAME": name = value; break;
+                    case "COMMENT": comment = value; break;
+                    case "DIMENSION": dimension = Integer.parseInt(value); break;
+                    case "EDGE_WEIGHT_TYPE": edgeWeightType = value; break;
+                    default: break;
+                }
+            }
+        }
+
+        if (x == null || count != dimension) {
+            throw new IOException(String.format("%s declares %d cities but lists %d", tspFile, dimension, count));
+        }
+        return new TspInstance(name, comment, x, y);
+    }
+
+    // Layout: a fixed 512 byte header (magic, version, dimension, name and comment) followed by
+    // the x and y coordinates as little-endian doubles, so the coordinates start 8-byte aligned.
+    static TspInstance readBinary(Path binaryFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(binaryFile, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            if (buffer.getInt() != BINARY_MAGIC || buffer.getInt() != BINARY_VERSION) {
+                throw new IOException("not an instance cache of this version");
+            }
+            int dimension = buffer.getInt();
+            String name = readString(buffer);
+            String comment = readString(buffer);
+
+            if (channel.size() != BINARY_HEADER_BYTES + 16L * dimension) {
+                throw new IOException("truncated instance cache");
+            }
+
+            double[] x = new double[dimension];
+            double[] y = new double[dimension];
+            buffer.position(BINARY_HEADER_BYTES);
+            buffer.asDoubleBuffer().get(x).get(y);
+            return new TspInstance(name, comment, x, y);
+        }
+    }
+
+    void writeBinary(Path binaryFile) throws IOException {
+        Path tempFile = binaryFile.resolveSibling(binaryFile.getFileName() + ".tmp");
+
+        try (FileChannel channel = FileChannel.open(tempFile,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BINARY_HEADER_BYTES + 16 * dimension).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putInt(dimension);
+            writeString(buffer, name);
+            writeString(buffer, comment);
+            buffer.position(BINARY_HEADER_BYTES);
+            buffer.asDoubleBuffer().put(x).put(y);
+            buffer.rewind();
+
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+
+        Files.move(tempFile, binaryFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // Name and comment share the header, so each is cut to fit.
+    private static void writeString(ByteBuffer buffer, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, (BINARY_HEADER_BYTES - 16) / 2 - 2);
+        buffer.putShort((short) length);
+        buffer.put(bytes, 0, length);
+    }
+
+    private static int skipSpaces(String line, int idx) {
+        while (idx < line.length() && Character.isWhitespace(line.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    private static int skipToken(String line, int idx) {
+        while (idx < line.length() && !Character.isWhitespace(line.charAt(idx))) {
+            idx++;
+        }
+        return idx;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String getComment() {
+        return comment;
+    }
+
+    int getDimension() {
+        return dimension;
+    }
+
+    double[] getX() {
+        return x;
+    }
+
+    double[] getY() {
+        return y;
+    }
+}
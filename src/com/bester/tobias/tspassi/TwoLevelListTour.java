@@ -0,0 +1,378 @@
+package com.bester.tobias.tspassi;
+
+// Two-level doubly-linked list: the tour is cut into about sqrt(n) segments, each a linked run
+// of slots with a reversed bit, and the segments form a cyclic list of their own. next, previous
+// and between are O(1); a reversal only splits the segments at its two ends and then flips the
+// bits and order of the whole segments in between, O(sqrt(n)) instead of O(n).
+//
+// A slot holds one city and keeps its segment and its place in it; cities move between slots
+// only when short paths are reversed by swapping them end to end. Splitting moves the smaller
+// part of a segment into the neighbouring one, so the number of segments never changes, and
+// the segments are rebuilt evenly if one of them grows too large.
+public class TwoLevelListTour implements Tour {
+
+    static final int MIN_CITIES = 4000;
+    private static final int MAX_ID = 1 << 29;
+
+    private final int size;
+    private final int groupSize;
+    private final int numSegments;
+    private final int maxSegmentSize;
+
+    private final int[] city;
+    private final int[] slotOf;
+    private final int[] segment;
+    private final int[] id;
+    private final int[] nextSlot;
+    private final int[] previousSlot;
+
+    // first and last are the ends of a segment in its own slot order, which is the tour's order
+    // unless reversed is set.
+    private final int[] first;
+    private final int[] last;
+    private final int[] segmentSize;
+    private final int[] rank;
+    private final int[] nextSegment;
+    private final int[] previousSegment;
+    private final boolean[] reversed;
+    private final int[] run;
+    private final int[] ranks;
+
+    private int[] cities;
+    private int rebuilds;
+
+    TwoLevelListTour(int size) {
+        this.size = size;
+        this.groupSize = Math.max(4, (int) Math.sqrt(size));
+        this.numSegments = (size + groupSize - 1) / groupSize;
+        this.maxSegmentSize = 4 * groupSize;
+
+        city = new int[size];
+        slotOf = new int[size];
+        segment = new int[size];
+        id = new int[size];
+        nextSlot = new int[size];
+        previousSlot = new int[size];
+
+        first = new int[numSegments];
+        last = new int[numSegments];
+        segmentSize = new int[numSegments];
+        rank = new int[numSegments];
+        nextSegment = new int[numSegments];
+        previousSegment = new int[numSegments];
+        reversed = new boolean[numSegments];
+        run = new int[numSegments];
+        ranks = new int[numSegments];
+    }
+
+    @Override
+    public void load(int[] cities) {
+        this.cities = cities;
+        for (int slot = 0; slot < size; slot++) {
+            city[slot] = cities[slot];
+            slotOf[cities[slot]] = slot;
+        }
+        build();
+    }
+
+    // Even segments over the slots in their current cities' order.
+    private void build() {
+        for (int slot = 0; slot < size; slot++) {
+            int group = slot / groupSize;
+            segment[slot] = group;
+            id[slot] = slot - group * groupSize;
+            nextSlot[slot] = slot + 1 < size && (slot + 1) % groupSize != 0 ? slot + 1 : -1;
+            previousSlot[slot] = slot % groupSize != 0 ? slot - 1 : -1;
+        }
+        for (int group = 0; group < numSegments; group++) {
+            first[group] = group * groupSize;
+            last[group] = Math.min(size, (group + 1) * groupSize) - 1;
+            segmentSize[group] = last[group] - first[group] + 1;
+            rank[group] = group;
+            nextSegment[group] = (group + 1) % numSegments;
+            previousSegment[group] = (group + numSegments - 1) % numSegments;
+            reversed[group] = false;
+        }
+    }
+
+    @Override
+    public void store(int[] cities) {
+        int current = city[0];
+        for (int idx = 0; idx < size; idx++) {
+            cities[idx] = current;
+            current = next(current);
+        }
+    }
+
+    @Override
+    public int next(int city) {
+        return this.city[following(slotOf[city])];
+    }
+
+    @Override
+    public int previous(int city) {
+        return this.city[preceding(slotOf[city])];
+    }
+
+    @Override
+    public boolean between(int a, int b, int c) {
+        long keyA = key(slotOf[a]);
+        long keyB = key(slotOf[b]);
+        long keyC = key(slotOf[c]);
+        return keyA <= keyC ? keyA <= keyB && keyB <= keyC : keyB >= keyA || keyB <= keyC;
+    }
+
+    // Paths within one segment or two neighbouring ones are reversed by swapping cities between
+    // slots, otherwise by reversing whole segments. A path and the rest of the tour are
+    // interchangeable, so whichever side is the cheaper one is reversed.
+    @Override
+    public void reverse(int from, int to) {
+        int fromSegment = segment[slotOf[from]];
+        int toSegment = segment[slotOf[to]];
+
+        if (fromSegment == toSegment && key(slotOf[from]) <= key(slotOf[to]) || nextSegment[fromSegment] == toSegment) {
+            swapPath(slotOf[from], slotOf[to]);
+        } else if (fromSegment == toSegment || nextSegment[toSegment] == fromSegment) {
+            if (next(to) != from) {
+                swapPath(slotOf[next(to)], slotOf[previous(from)]);
+            }
+        } else {
+            int rebuildsBefore = rebuilds;
+            splitBefore(slotOf[from]);
+            splitAfter(slotOf[to]);
+            if (rebuilds != rebuildsBefore) {
+                // The rebuild undid the splits; the segments are even now, so this goes through.
+                reverse(from, to);
+                return;
+            }
+            reverseSegments(segment[slotOf[from]], segment[slotOf[to]]);
+        }
+    }
+
+    int getRebuilds() {
+        return rebuilds;
+    }
+
+    private void swapPath(int fromSlot, int toSlot) {
+        while (fromSlot != toSlot) {
+            int fromCity = city[fromSlot];
+            int toCity = city[toSlot];
+            city[fromSlot] = toCity;
+            slotOf[toCity] = fromSlot;
+            city[toSlot] = fromCity;
+            slotOf[fromCity] = toSlot;
+
+            int next = following(fromSlot);
+            if (next == toSlot) {
+                break;
+            }
+            fromSlot = next;
+            toSlot = preceding(toSlot);
+        }
+    }
+
+    // Reverses the segments from firstSegment to lastSegment, or the others if those are fewer.
+    private void reverseSegments(int firstSegment, int lastSegment) {
+        int count = 1;
+        for (int current = firstSegment; current != lastSegment; current = nextSegment[current]) {
+            count++;
+        }
+        if (2 * count > numSegments) {
+            if (nextSegment[lastSegment] == firstSegment) {
+                return;
+            }
+            int complement = nextSegment[lastSegment];
+            lastSegment = previousSegment[firstSegment];
+            firstSegment = complement;
+            count = numSegments - count;
+        }
+
+        int before = previousSegment[firstSegment];
+        int after = nextSegment[lastSegment];
+        int current = firstSegment;
+        for (int idx = 0; idx < count; idx++) {
+            run[idx] = current;
+            ranks[idx] = rank[current];
+            current = nextSegment[current];
+        }
+
+        int previous = before;
+        for (int idx = count - 1; idx >= 0; idx--) {
+            int reversedSegment = run[idx];
+            reversed[reversedSegment] = !reversed[reversedSegment];
+            rank[reversedSegment] = ranks[count - 1 - idx];
+            previousSegment[reversedSegment] = previous;
+            nextSegment[previous] = reversedSegment;
+            previous = reversedSegment;
+        }
+        nextSegment[previous] = after;
+        previousSegment[after] = previous;
+    }
+
+    // Makes slot the first of its segment in tour order, by moving the part before it to the end
+    // of the previous segment or the part from it onwards to the start of the next one.
+    private void splitBefore(int slot) {
+        int current = segment[slot];
+        int before = offset(slot);
+        if (before == 0) {
+            return;
+        }
+        if (2 * before <= segmentSize[current]) {
+            int target = previousSegment[current];
+            for (int moved = 0; moved < before; moved++) {
+                pushLast(target, popFirst(current));
+            }
+            balance(target);
+        } else {
+            int target = nextSegment[current];
+            for (int moved = segmentSize[current] - before; moved > 0; moved--) {
+                pushFirst(target, popLast(current));
+            }
+            balance(target);
+        }
+    }
+
+    // Makes slot the last of its segment in tour order.
+    private void splitAfter(int slot) {
+        int current = segment[slot];
+        int upTo = offset(slot) + 1;
+        int after = segmentSize[current] - upTo;
+        if (after == 0) {
+            return;
+        }
+        if (2 * after <= segmentSize[current]) {
+            int target = nextSegment[current];
+            for (int moved = 0; moved < after; moved++) {
+                pushFirst(target, popLast(current));
+            }
+            balance(target);
+        } else {
+            int target = previousSegment[current];
+            for (int moved = 0; moved < upTo; moved++) {
+                pushLast(target, popFirst(current));
+            }
+            balance(target);
+        }
+    }
+
+    // Rebuilding keeps the order of the cities but not their slots, so slots are looked up again
+    // after a split.
+    private void balance(int grown) {
+        if (segmentSize[grown] > maxSegmentSize) {
+            store(cities);
+            load(cities);
+            rebuilds++;
+        }
+    }
+
+    // Number of slots before this one in its segment, in tour order.
+    private int offset(int slot) {
+        int current = segment[slot];
+        return reversed[current] ? id[last[current]] - id[slot] : id[slot] - id[first[current]];
+    }
+
+    private int following(int slot) {
+        int current = segment[slot];
+        if (reversed[current]) {
+            return slot == first[current] ? head(nextSegment[current]) : previousSlot[slot];
+        }
+        return slot == last[current] ? head(nextSegment[current]) : nextSlot[slot];
+    }
+
+    private int preceding(int slot) {
+        int current = segment[slot];
+        if (reversed[current]) {
+            return slot == last[current] ? tail(previousSegment[current]) : nextSlot[slot];
+        }
+        return slot == first[current] ? tail(previousSegment[current]) : previousSlot[slot];
+    }
+
+    private int head(int current) {
+        return reversed[current] ? last[current] : first[current];
+    }
+
+    private int tail(int current) {
+        return reversed[current] ? first[current] : last[current];
+    }
+
+    // Segment rank, then place within the segment in tour order.
+    private long key(int slot) {
+        int current = segment[slot];
+        return ((long) rank[current] << 32) + (reversed[current] ? -id[slot] : id[slot]) + MAX_ID * 2L;
+    }
+
+    private int popFirst(int current) {
+        return reversed[current] ? removeLast(current) : removeFirst(current);
+    }
+
+    private int popLast(int current) {
+        return reversed[current] ? removeFirst(current) : removeLast(current);
+    }
+
+    private void pushFirst(int current, int slot) {
+        if (reversed[current]) {
+            append(current, slot);
+        } else {
+            prepend(current, slot);
+        }
+    }
+
+    private void pushLast(int current, int slot) {
+        if (reversed[current]) {
+            prepend(current, slot);
+        } else {
+            append(current, slot);
+        }
+    }
+
+    private int removeFirst(int current) {
+        int slot = first[current];
+        first[current] = nextSlot[slot];
+        previousSlot[first[current]] = -1;
+        segmentSize[current]--;
+        return slot;
+    }
+
+    private int removeLast(int current) {
+        int slot = last[current];
+        last[current] = previousSlot[slot];
+        nextSlot[last[current]] = -1;
+        segmentSize[current]--;
+        return slot;
+    }
+
+    private void append(int current, int slot) {
+        int end = last[current];
+        if (id[end] >= MAX_ID) {
+            renumber(current);
+        }
+        nextSlot[end] = slot;
+        previousSlot[slot] = end;
+        nextSlot[slot] = -1;
+        id[slot] = id[end] + 1;
+        segment[slot] = current;
+        last[current] = slot;
+        segmentSize[current]++;
+    }
+
+    private void prepend(int current, int slot) {
+        int start = first[current];
+        if (id[start] <= -MAX_ID) {
+            renumber(current);
+        }
+        previousSlot[start] = slot;
+        nextSlot[slot] = start;
+        previousSlot[slot] = -1;
+        id[slot] = id[start] - 1;
+        segment[slot] = current;
+        first[current] = slot;
+        segmentSize[current]++;
+    }
+
+    private void renumber(int current) {
+        int number = 0;
+        for (int slot = first[current]; slot >= 0; slot = nextSlot[slot]) {
+            id[slot] = number++;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.bester.tobias.tspassi;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShape;
+import jdk.incubator.vector.VectorSpecies;
+
+// Measures one edge per lane: the coordinates of tour[i, i + lanes) and of their successors are
+// gathered straight from x and y by index, which is cheaper than copying them into tour order
+// first. The closing edge and any edges past the last full vector are done in scalar code.
+//
+// The rounding is done lane by lane as the scalar code does it: sqrt in double, narrowed to float
+// and widened again, then floor(f + 0.5), which for non-negative floats is exactly Math.round.
+// No fused multiply-add is used, so the squares and their sum round as they do in scalar code.
+// Vector casts from double to integer lanes are not compiled to SIMD instructions on JDK 17 and
+// cost more than the scalar loop, so edge lengths stay doubles: adding and subtracting 2^52
+// rounds to an integer, and one masked subtraction turns that into floor. Sums of integers below
+// 2^53 are exact in double.
+public class VectorTourKernel implements TourKernel {
+
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS =
+            VectorSpecies.of(float.class, VectorShape.forBitSize(DOUBLES.vectorBitSize() / 2));
+    private static final double TWO_52 = 0x1p52;
+
+    private final double[] x;
+    private final double[] y;
+
+    VectorTourKernel(double[] x, double[] y) {
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public int length(int[] tour) {
+        int size = tour.length;
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int idx = 0;
+        for (int bound = fullVectorEdges(size); idx < bound; idx += DOUBLES.length()) {
+            sum = sum.add(edges(tour, idx));
+        }
+
+        long length = (long) sum.reduceLanes(VectorOperators.ADD);
+        for (; idx < size; idx++) {
+            int from = tour[idx];
+            int to = tour[idx == size - 1 ? 0 : idx + 1];
+            double xd = x[to] - x[from];
+            double yd = y[to] - y[from];
+            length += Math.round((float) Math.sqrt((xd * xd) + (yd * yd)));
+        }
+        return (int) length;
+    }
+
+    // Lengths of the tour's edges from the SIMD lanes alone, for checking them one by one; edge i
+    // runs from tour[i] to tour[i + 1]. Edges from fullVectorEdges on are left at zero.
+    double[] edgeLengths(int[] tour) {
+        double[] lengths = new double[tour.length];
+        for (int idx = 0, bound = fullVectorEdges(tour.length); idx < bound; idx += DOUBLES.length()) {
+            edges(tour, idx).intoArray(lengths, idx);
+        }
+        return lengths;
+    }
+
+    // The successors' indexes must stay inside the tour, so the closing edge is never in a vector.
+    int fullVectorEdges(int size) {
+        return DOUBLES.loopBound(size - 1);
+    }
+
+    private DoubleVector edges(int[] tour, int idx) {
+        DoubleVector xd = DoubleVector.fromArray(DOUBLES, x, 0, tour, idx + 1)
+                .sub(DoubleVector.fromArray(DOUBLES, x, 0, tour, idx));
+        DoubleVector yd = DoubleVector.fromArray(DOUBLES, y, 0, tour, idx + 1)
+                .sub(DoubleVector.fromArray(DOUBLES, y, 0, tour, idx));
+        FloatVector narrowed = (FloatVector) xd.mul(xd).add(yd.mul(yd)).lanewise(VectorOperators.SQRT)
+                .convertShape(VectorOperators.D2F, FLOATS, 0);
+        DoubleVector halfUp = ((DoubleVector) narrowed.convertShape(VectorOperators.F2D, DOUBLES, 0)).add(0.5);
+        DoubleVector nearest = halfUp.add(TWO_52).sub(TWO_52);
+        return nearest.sub(1, nearest.compare(VectorOperators.GT, halfUp));
+    }
+}
@@ -0,0 +1,81 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class ChromosomeTest {
+
+    private static int[] rotated(int[] tour, int by) {
+        int[] rotated = new int[tour.length];
+        for (int idx = 0; idx < tour.length; idx++) {
+            rotated[idx] = tour[(idx + by) % tour.length];
+        }
+        return rotated;
+    }
+
+    private static int[] reversed(int[] tour) {
+        int[] reversed = new int[tour.length];
+        for (int idx = 0; idx < tour.length; idx++) {
+            reversed[idx] = tour[tour.length - 1 - idx];
+        }
+        return reversed;
+    }
+
+    @Test
+    void hashIgnoresStartAndDirection() {
+        SplittableRandom random = new SplittableRandom(1);
+        for (int numCities : new int[] {3, 4, 10, 500}) {
+            for (int trial = 0; trial < 20; trial++) {
+                int[] tour = TestInstances.randomTour(numCities, random);
+                long hash = Chromosome.hashOf(tour);
+                int by = random.nextInt(numCities);
+                assertEquals(hash, Chromosome.hashOf(rotated(tour, by)));
+                assertEquals(hash, Chromosome.hashOf(reversed(tour)));
+                assertEquals(hash, Chromosome.hashOf(reversed(rotated(tour, by))));
+            }
+        }
+    }
+
+    @Test
+    void hashTellsDifferentToursApart() {
+        SplittableRandom random = new SplittableRandom(2);
+        int[] tour = TestInstances.randomTour(100, random);
+        int[] swapped = tour.clone();
+        swapped[10] = tour[50];
+        swapped[50] = tour[10];
+        assertNotEquals(Chromosome.hashOf(tour), Chromosome.hashOf(swapped));
+    }
+
+    // Swaps adjust fitness and hash by the edges they change; the sums must stay exact.
+    @Test
+    void swapsKeepFitnessAndHashInStep() {
+        DistanceMatrix distances = TestInstances.distances(60, 3);
+        SplittableRandom random = new SplittableRandom(3);
+        Chromosome chromosome = new Chromosome(0, 60, distances, random);
+        chromosome.getHash();
+        for (int swap = 0; swap < 2000; swap++) {
+            int idx1 = random.nextInt(60);
+            int idx2 = random.nextInt(59);
+            chromosome.swapAndUpdateFitness(idx1, idx2 >= idx1 ? idx2 + 1 : idx2);
+            assertEquals(TestInstances.length(chromosome.getTour(), distances), chromosome.getCurrentFitness());
+            assertEquals(Chromosome.hashOf(chromosome.getTour()), chromosome.getHash());
+        }
+    }
+
+    @Test
+    void cachedFitnessIsSharedByRotationsAndReversals() {
+        DistanceMatrix distances = TestInstances.distances(40, 4);
+        SplittableRandom random = new SplittableRandom(4);
+        FitnessCache cache = new FitnessCache(64);
+        int[] tour = TestInstances.randomTour(40, random);
+        int length = new Chromosome(0, tour.clone(), distances).evaluate(cache);
+
+        Chromosome reversedCopy = new Chromosome(1, reversed(rotated(tour, 17)), distances);
+        assertEquals(length, reversedCopy.evaluate(cache));
+        assertEquals(length, cache.get(Chromosome.hashOf(rotated(tour, 5))));
+    }
+}
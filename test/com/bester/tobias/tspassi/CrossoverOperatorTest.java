@@ -0,0 +1,132 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CrossoverOperatorTest {
+
+    private static final String[] OPERATORS = {"ox", "pmx", "erx", "eax"};
+    private static final int NUM_CITIES = 300;
+    private static final int TRIALS = 200;
+
+    private final DistanceMatrix distances = TestInstances.distances(NUM_CITIES, 1);
+    private final NeighborLists neighbors = new NeighborLists(distances.getX(), distances.getY(), 10);
+
+    // Random parents, or every other time a parent and a copy of it with a few cities swapped, the
+    // way parents look once a population has converged.
+    private static int[][] parents(SplittableRandom random) {
+        int[] parent1 = TestInstances.randomTour(NUM_CITIES, random);
+        int[] parent2 = random.nextBoolean() ? TestInstances.randomTour(NUM_CITIES, random) : parent1.clone();
+        for (int swap = 0; swap < 5; swap++) {
+            int idx1 = random.nextInt(NUM_CITIES);
+            int idx2 = random.nextInt(NUM_CITIES);
+            int city = parent2[idx1];
+            parent2[idx1] = parent2[idx2];
+            parent2[idx2] = city;
+        }
+        return new int[][] {parent1, parent2};
+    }
+
+    private static Set<Long> edges(int[]... tours) {
+        Set<Long> edges = new HashSet<>();
+        for (int[] tour : tours) {
+            for (int idx = 0; idx < tour.length; idx++) {
+                edges.add(Chromosome.edgeHash(tour[idx], tour[(idx + 1) % tour.length]));
+            }
+        }
+        return edges;
+    }
+
+    private static double inheritedEdges(int[] child, Set<Long> parentEdges) {
+        int inherited = 0;
+        for (int idx = 0; idx < child.length; idx++) {
+            if (parentEdges.contains(Chromosome.edgeHash(child[idx], child[(idx + 1) % child.length]))) {
+                inherited++;
+            }
+        }
+        return (double) inherited / child.length;
+    }
+
+    @Test
+    void childrenArePermutations() {
+        for (String name : OPERATORS) {
+            for (int numCities : new int[] {5, 6, 7, 50, NUM_CITIES}) {
+                DistanceMatrix small = TestInstances.distances(numCities, numCities);
+                CrossoverOperator operator = CrossoverOperator.create(name, small,
+                        new NeighborLists(small.getX(), small.getY(), Math.min(10, numCities - 1)), 0.5);
+                SplittableRandom random = new SplittableRandom(numCities);
+                int[] child1 = new int[numCities];
+                int[] child2 = new int[numCities];
+                for (int trial = 0; trial < TRIALS; trial++) {
+                    operator.crossover(TestInstances.randomTour(numCities, random),
+                            TestInstances.randomTour(numCities, random), child1, child2, random);
+                    assertTrue(TestInstances.isPermutation(child1), name);
+                    assertTrue(TestInstances.isPermutation(child2), name);
+                }
+            }
+        }
+    }
+
+    @Test
+    void identicalParentsGiveTheirTour() {
+        for (String name : OPERATORS) {
+            CrossoverOperator operator = CrossoverOperator.create(name, distances, neighbors, 0);
+            SplittableRandom random = new SplittableRandom(2);
+            int[] child1 = new int[NUM_CITIES];
+            int[] child2 = new int[NUM_CITIES];
+            for (int trial = 0; trial < 20; trial++) {
+                int[] parent = TestInstances.randomTour(NUM_CITIES, random);
+                operator.crossover(parent, parent.clone(), child1, child2, random);
+                assertEquals(Chromosome.hashOf(parent), Chromosome.hashOf(child1), name);
+                assertEquals(Chromosome.hashOf(parent), Chromosome.hashOf(child2), name);
+            }
+        }
+    }
+
+    // ERX only takes a new edge when it runs out of parent edges, and EAX only to join subtours.
+    @Test
+    void edgeOperatorsInheritTheirEdges() {
+        for (String name : new String[] {"erx", "eax"}) {
+            CrossoverOperator operator = CrossoverOperator.create(name, distances, neighbors, 0);
+            SplittableRandom random = new SplittableRandom(3);
+            int[] child1 = new int[NUM_CITIES];
+            int[] child2 = new int[NUM_CITIES];
+            for (int trial = 0; trial < TRIALS; trial++) {
+                int[][] parents = parents(random);
+                operator.crossover(parents[0], parents[1], child1, child2, random);
+                Set<Long> parentEdges = edges(parents);
+                assertTrue(inheritedEdges(child1, parentEdges) >= 0.9, name);
+                assertTrue(inheritedEdges(child2, parentEdges) >= 0.9, name);
+            }
+        }
+    }
+
+    // PMX keeps a segment of one parent in place and fills the rest from the other parent's
+    // positions, so most positions hold one of the parents' cities.
+    @Test
+    void partiallyMappedChildrenInheritTheirPositions() {
+        CrossoverOperator operator = CrossoverOperator.create("pmx", distances, neighbors, 0);
+        SplittableRandom random = new SplittableRandom(4);
+        int[] child1 = new int[NUM_CITIES];
+        int[] child2 = new int[NUM_CITIES];
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int[][] parents = parents(random);
+            operator.crossover(parents[0], parents[1], child1, child2, random);
+            for (int[] child : new int[][] {child1, child2}) {
+                int inherited = 0;
+                for (int idx = 0; idx < NUM_CITIES; idx++) {
+                    if (child[idx] == parents[0][idx] || child[idx] == parents[1][idx]) {
+                        inherited++;
+                    }
+                }
+                assertTrue(inherited >= NUM_CITIES * 0.6);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class EdgeEntropyTest {
+
+    // Straight from the definition, with every edge counted afresh.
+    private static double recount(int[][] tours) {
+        Map<Long, Integer> counts = new HashMap<>();
+        for (int[] tour : tours) {
+            for (int idx = 0; idx < tour.length; idx++) {
+                counts.merge(Chromosome.edgeHash(tour[idx], tour[(idx + 1) % tour.length]), 1, Integer::sum);
+            }
+        }
+        double total = (double) tours.length * tours[0].length;
+        double entropy = 0;
+        for (int count : counts.values()) {
+            entropy -= count / total * Math.log(count / total);
+        }
+        double lowest = Math.log(tours[0].length);
+        return (entropy - lowest) / (Math.log(total) - lowest);
+    }
+
+    // A new random tour, a copy of another member, or the member itself with a few cities swapped.
+    private static int[] replacement(int[][] tours, int member, SplittableRandom random) {
+        int numCities = tours[member].length;
+        switch (random.nextInt(3)) {
+            case 0:
+                return TestInstances.randomTour(numCities, random);
+            case 1:
+                return tours[random.nextInt(tours.length)].clone();
+            default:
+                int[] tour = tours[member].clone();
+                for (int swap = random.nextInt(4); swap >= 0; swap--) {
+                    int idx1 = random.nextInt(numCities);
+                    int idx2 = random.nextInt(numCities);
+                    int city = tour[idx1];
+                    tour[idx1] = tour[idx2];
+                    tour[idx2] = city;
+                }
+                return tour;
+        }
+    }
+
+    @Test
+    void replacementsMatchRecount() {
+        for (int numCities : new int[] {3, 10, 200}) {
+            SplittableRandom random = new SplittableRandom(numCities);
+            int[][] tours = new int[20][];
+            EdgeEntropy edges = new EdgeEntropy(numCities, tours.length);
+            for (int member = 0; member < tours.length; member++) {
+                tours[member] = TestInstances.randomTour(numCities, random);
+                edges.add(tours[member]);
+            }
+            assertEquals(recount(tours), edges.diversity(), 1e-9);
+
+            for (int step = 0; step < 5000; step++) {
+                int member = random.nextInt(tours.length);
+                int[] tour = replacement(tours, member, random);
+                edges.replace(tours[member], tour);
+                tours[member] = tour;
+                if (step % 50 == 0) {
+                    assertEquals(recount(tours), edges.diversity(), 1e-9);
+                }
+            }
+            assertEquals(recount(tours), edges.diversity(), 1e-9);
+        }
+    }
+
+    @Test
+    void identicalMembersHaveNoDiversity() {
+        int[] tour = TestInstances.randomTour(50, new SplittableRandom(1));
+        EdgeEntropy edges = new EdgeEntropy(50, 10);
+        for (int member = 0; member < 10; member++) {
+            edges.add(tour);
+        }
+        assertEquals(0, edges.diversity(), 1e-12);
+    }
+}
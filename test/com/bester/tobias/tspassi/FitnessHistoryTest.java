@@ -0,0 +1,74 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FitnessHistoryTest {
+
+    private static final int GENERATIONS = 100_000;
+    private static final long SPIKE = 61_234;
+    private static final long DIP = 80_001;
+
+    // A slow decline with one spike and one dip a single generation wide.
+    private static FitnessHistory history() {
+        FitnessHistory history = new FitnessHistory(64);
+        for (long generation = 1; generation <= GENERATIONS; generation++) {
+            double value = generation == SPIKE ? 5000 : generation == DIP ? 0 : 2000 - generation / 100.0;
+            history.add(value);
+        }
+        return history;
+    }
+
+    @Test
+    void downsampleKeepsSingleGenerationExtremes() {
+        double[][] sampled = history().downsample(20);
+        assertEquals(20, sampled[0].length);
+        boolean spike = false;
+        boolean dip = false;
+        for (int point = 0; point < sampled[0].length; point++) {
+            spike |= sampled[0][point] == SPIKE && sampled[1][point] == 5000;
+            dip |= sampled[0][point] == DIP && sampled[1][point] == 0;
+        }
+        assertTrue(spike && dip);
+    }
+
+    @Test
+    void downsampledGenerationsAreInOrder() {
+        double[][] sampled = history().downsample(40);
+        assertEquals(1, sampled[0][0]);
+        for (int point = 1; point < sampled[0].length; point++) {
+            assertTrue(sampled[0][point] > sampled[0][point - 1]);
+        }
+    }
+
+    @Test
+    void totalsAreExact() {
+        FitnessHistory history = history();
+        assertEquals(GENERATIONS, history.size());
+        assertEquals(0, history.getMin());
+        assertEquals(5000, history.getMax());
+        assertEquals(2000 - GENERATIONS / 100.0, history.getLast());
+        assertTrue(history.getNumPoints() <= 64);
+    }
+
+    @Test
+    void snapshotRoundTrip() {
+        FitnessHistory history = history();
+        history.add(42);
+        ByteBuffer buffer = ByteBuffer.allocate(history.snapshotBytes());
+        history.writeTo(buffer);
+        assertEquals(0, buffer.remaining());
+
+        FitnessHistory restored = FitnessHistory.readFrom(buffer.flip());
+        assertEquals(history.size(), restored.size());
+        double[][] expected = history.downsample(30);
+        double[][] actual = restored.downsample(30);
+        assertArrayEquals(expected[0], actual[0]);
+        assertArrayEquals(expected[1], actual[1]);
+    }
+}
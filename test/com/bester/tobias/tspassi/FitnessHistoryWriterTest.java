@@ -0,0 +1,59 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FitnessHistoryWriterTest {
+
+    @TempDir
+    Path directory;
+
+    private static void write(FitnessHistoryWriter writer, long from, long to) {
+        for (long generation = from; generation <= to; generation++) {
+            writer.append(generation, (int) (1000 - generation), 2000 - generation);
+        }
+        writer.close();
+    }
+
+    @Test
+    void resumedRunContinuesAfterTheSnapshotGeneration() throws IOException {
+        Path file = directory.resolve("history.csv");
+        write(new FitnessHistoryWriter(file), 1, 12);
+        write(new FitnessHistoryWriter(file, 10), 11, 15);
+
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        assertEquals(16, lines.size());
+        assertEquals("generation,best,average", lines.get(0));
+        for (int generation = 1; generation <= 15; generation++) {
+            assertTrue(lines.get(generation).startsWith(generation + ","));
+        }
+    }
+
+    @Test
+    void rowCutShortIsDropped() throws IOException {
+        Path file = directory.resolve("history.csv");
+        Files.writeString(file, "generation,best,average\n1,990,1990.000\n2,98");
+        write(new FitnessHistoryWriter(file, 2), 2, 3);
+
+        assertEquals(List.of("generation,best,average", "1,990,1990.000", "2,998,1998.000", "3,997,1997.000"),
+                Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void missingFileStartsWithHeader() throws IOException {
+        Path file = directory.resolve("history.csv");
+        write(new FitnessHistoryWriter(file, 5), 6, 6);
+
+        assertEquals(List.of("generation,best,average", "6,994,1994.000"),
+                Files.readAllLines(file, StandardCharsets.UTF_8));
+    }
+}
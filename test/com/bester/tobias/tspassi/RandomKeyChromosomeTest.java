@@ -0,0 +1,59 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class RandomKeyChromosomeTest {
+
+    // Random new keys, and every so often another city's key or one at either end of [0, 1), so
+    // ties and moves to the first and last place are covered too.
+    private static float nextKey(RandomKeyChromosome chromosome, SplittableRandom random) {
+        float[] keys = chromosome.getKeys();
+        switch (random.nextInt(6)) {
+            case 0: return keys[random.nextInt(keys.length)];
+            case 1: return 0;
+            case 2: return Math.nextDown(1f);
+            default: return random.nextFloat();
+        }
+    }
+
+    private static void assertMatchesDecode(RandomKeyChromosome chromosome, DistanceMatrix distances) {
+        RandomKeyChromosome decoded = new RandomKeyChromosome(chromosome.getKeys().clone(), distances);
+        decoded.decode();
+        assertArrayEquals(decoded.getTour(), chromosome.getTour());
+        assertEquals(decoded.getCurrentFitness(), chromosome.getCurrentFitness());
+        assertEquals(decoded.getHash(), chromosome.getHash());
+    }
+
+    // Both sorts: packed longs below MIN_RADIX_CITIES cities and the radix sort above.
+    @Test
+    void moveKeyMatchesFullDecode() {
+        for (int numCities : new int[] {4, 5, 60, 1000}) {
+            DistanceMatrix distances = TestInstances.distances(numCities, numCities);
+            SplittableRandom random = new SplittableRandom(numCities);
+            RandomKeyChromosome chromosome = new RandomKeyChromosome(numCities, distances, random);
+            chromosome.decode();
+            for (int move = 0; move < 2000; move++) {
+                chromosome.moveKey(random.nextInt(numCities), nextKey(chromosome, random));
+                assertFalse(chromosome.isDirty());
+                assertMatchesDecode(chromosome, distances);
+            }
+        }
+    }
+
+    @Test
+    void moveKeyOnUndecodedGenomeWaitsForDecode() {
+        DistanceMatrix distances = TestInstances.distances(100, 7);
+        SplittableRandom random = new SplittableRandom(7);
+        RandomKeyChromosome chromosome = new RandomKeyChromosome(100, distances, random);
+        chromosome.moveKey(3, 0.5f);
+        chromosome.decode();
+        assertEquals(0.5f, chromosome.getKeys()[3]);
+        assertMatchesDecode(chromosome, distances);
+    }
+}
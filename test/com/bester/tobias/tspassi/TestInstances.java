@@ -0,0 +1,54 @@
+package com.bester.tobias.tspassi;
+
+import java.util.SplittableRandom;
+
+// Random Euclidean instances and tours for tests, so no test depends on the files in problems/.
+final class TestInstances {
+
+    private TestInstances() {
+    }
+
+    static DistanceMatrix distances(int numCities, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] x = new double[numCities];
+        double[] y = new double[numCities];
+        for (int city = 0; city < numCities; city++) {
+            x[city] = random.nextInt(10_000);
+            y[city] = random.nextInt(10_000);
+        }
+        return new DistanceMatrix(x, y);
+    }
+
+    static int[] randomTour(int numCities, SplittableRandom random) {
+        int[] tour = new int[numCities];
+        for (int idx = 0; idx < numCities; idx++) {
+            tour[idx] = idx;
+        }
+        for (int idx = numCities - 1; idx > 0; idx--) {
+            int other = random.nextInt(idx + 1);
+            int city = tour[idx];
+            tour[idx] = tour[other];
+            tour[other] = city;
+        }
+        return tour;
+    }
+
+    static boolean isPermutation(int[] tour) {
+        boolean[] seen = new boolean[tour.length];
+        for (int city : tour) {
+            if (city < 0 || city >= tour.length || seen[city]) {
+                return false;
+            }
+            seen[city] = true;
+        }
+        return true;
+    }
+
+    static int length(int[] tour, DistanceMatrix distances) {
+        int length = distances.distance(tour[tour.length - 1], tour[0]);
+        for (int idx = 0; idx < tour.length - 1; idx++) {
+            length += distances.distance(tour[idx], tour[idx + 1]);
+        }
+        return length;
+    }
+}
@@ -0,0 +1,80 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// TwoLevelListTour against ArrayTour under the same random reversals. Either may end up running
+// the other way round, so the two are compared up to direction: when they disagree on it, next in
+// one is previous in the other and a forward path from a to c is the one from c to a.
+class TourTest {
+
+    private static void compare(int numCities, int operations, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] cities = TestInstances.randomTour(numCities, random);
+        ArrayTour array = new ArrayTour(numCities);
+        array.load(cities.clone());
+        TwoLevelListTour list = new TwoLevelListTour(numCities);
+        list.load(cities.clone());
+
+        for (int operation = 0; operation < operations; operation++) {
+            boolean sameWay = list.next(0) == array.next(0);
+            int from = random.nextInt(numCities);
+            int to = from;
+            // Short paths are reversed by swapping cities and long ones by whole segments.
+            int steps = random.nextBoolean() ? random.nextInt(8) : random.nextInt(numCities);
+            for (int step = 0; step < steps; step++) {
+                to = array.next(to);
+            }
+            array.reverse(from, to);
+            if (sameWay) {
+                list.reverse(from, to);
+            } else {
+                list.reverse(to, from);
+            }
+
+            sameWay = list.next(0) == array.next(0);
+            for (int query = 0; query < 20; query++) {
+                int a = random.nextInt(numCities);
+                int b = random.nextInt(numCities);
+                int c = random.nextInt(numCities);
+                assertEquals(array.next(a), sameWay ? list.next(a) : list.previous(a));
+                assertEquals(array.previous(a), sameWay ? list.previous(a) : list.next(a));
+                assertEquals(array.between(a, b, c), sameWay ? list.between(a, b, c) : list.between(c, b, a));
+            }
+            if (operation % 500 == 0) {
+                assertSameCycle(array, list, numCities);
+            }
+        }
+        assertSameCycle(array, list, numCities);
+    }
+
+    private static void assertSameCycle(Tour array, Tour list, int numCities) {
+        boolean sameWay = list.next(0) == array.next(0);
+        for (int city = 0; city < numCities; city++) {
+            assertEquals(array.next(city), sameWay ? list.next(city) : list.previous(city));
+        }
+        int[] stored = new int[numCities];
+        list.store(stored);
+        assertTrue(TestInstances.isPermutation(stored));
+    }
+
+    @Test
+    void smallTourMatchesArrayTour() {
+        compare(50, 5_000, 1);
+    }
+
+    @Test
+    void largeTourMatchesArrayTour() {
+        compare(3_000, 5_000, 2);
+    }
+
+    @Test
+    void unevenSegmentsMatchArrayTour() {
+        // 1001 cities do not divide into segments of equal size.
+        compare(1_001, 10_000, 3);
+    }
+}
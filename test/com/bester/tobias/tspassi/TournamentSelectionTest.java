@@ -0,0 +1,62 @@
+package com.bester.tobias.tspassi;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TournamentSelectionTest {
+
+    private static final int DRAWS = 20_000;
+
+    // The last member is the fittest, the first the least fit.
+    private static int[] wins(int populationSize, int tournamentSize, long seed) {
+        int[] fitness = new int[populationSize];
+        for (int member = 0; member < populationSize; member++) {
+            fitness[member] = populationSize - member;
+        }
+        SelectionStrategy selection = new TournamentSelection(tournamentSize, false);
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] wins = new int[populationSize];
+        for (int draw = 0; draw < DRAWS; draw++) {
+            wins[selection.select(fitness, random)]++;
+        }
+        return wins;
+    }
+
+    @Test
+    void bestMemberWinsAsOftenAsItIsDrawn() {
+        int[] wins = wins(20, 4, 1);
+        // The best of 20 is among 4 distinct members with probability 4 / 20.
+        assertEquals(DRAWS * 4 / 20.0, wins[19], DRAWS * 0.02);
+    }
+
+    @Test
+    void populationSizeChangeOnTheSameThreadRebuildsScratch() {
+        wins(19, 5, 2);
+        int[] wins = wins(20, 4, 3);
+        assertEquals(DRAWS * 4 / 20.0, wins[19], DRAWS * 0.02);
+        // The worst three members can never be the best of four distinct members.
+        assertEquals(0, wins[0] + wins[1] + wins[2]);
+    }
+
+    @Test
+    void tournamentOfWholePopulationAlwaysPicksTheBest() {
+        wins(30, 2, 4);
+        int[] wins = wins(10, 10, 5);
+        assertEquals(DRAWS, wins[9]);
+    }
+
+    @Test
+    void selectionWithReplacementStaysInRange() {
+        int[] fitness = {5, 3, 9};
+        SelectionStrategy selection = new TournamentSelection(8, true);
+        SplittableRandom random = new SplittableRandom(6);
+        for (int draw = 0; draw < 1000; draw++) {
+            int selected = selection.select(fitness, random);
+            assertTrue(selected >= 0 && selected < fitness.length);
+        }
+    }
+}